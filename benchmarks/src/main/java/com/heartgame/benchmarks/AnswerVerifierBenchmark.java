@@ -0,0 +1,71 @@
+package com.heartgame.benchmarks;
+
+import com.heartgame.model.Hand;
+import com.heartgame.model.Operation;
+import com.heartgame.service.AnswerVerifier;
+import com.heartgame.service.GameEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch answer verification of five-card submissions, about one in a hundred
+ * of them tampered with. Divide the batch size by the time per batch for
+ * verifications per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnswerVerifierBenchmark {
+    
+    private static final String[] MODES = {"Classic", "Timed", "Streak"};
+    
+    @Param({"100000", "1000000"})
+    public int submissions;
+    
+    private final AnswerVerifier verifier = new AnswerVerifier();
+    private AnswerVerifier.Batch batch;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        batch = new AnswerVerifier.Batch(submissions);
+        int[] order = {0, 1, 2, 3, 4};
+        for (int i = 0; i < submissions; i++) {
+            Hand hand = Hand.deal(random, 5);
+            Operation operation = Operation.fromOrdinal(random.nextInt(4));
+            int count = 2 + random.nextInt(4);
+            int result = hand.valueAt(0);
+            for (int k = 1; k < count; k++) {
+                result = operation.apply(result, hand.valueAt(k));
+            }
+            String mode = MODES[random.nextInt(MODES.length)];
+            int tier = random.nextInt(6) - 1;
+            int time = random.nextInt(60);
+            int score = GameEngine.score(result, tier, count, time, GameEngine.modeMultiplier(mode));
+            if (random.nextInt(100) == 0) {
+                score++;
+            }
+            batch.add(hand, order, count, operation, result, tier, time, mode, result, score);
+        }
+    }
+    
+    @Benchmark
+    public AnswerVerifier.Report verify() {
+        return verifier.verify(batch);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.heartgame.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar.
+ *
+ * Accepts the usual JMH command line and adds the gc profiler unless a
+ * profiler is already chosen, so every run reports allocation rates:
+ *
+ *   java -jar target/benchmarks.jar                      (everything)
+ *   java -jar target/benchmarks.jar UserStore -p users=1000
+ */
+public class BenchmarkRunner {
+    
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-prof") && !options.contains("-lprof")) {
+            options.add(0, "-prof");
+            options.add(1, "gc");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.heartgame.benchmarks;
+
+import com.heartgame.model.Card;
+import com.heartgame.model.Hand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading card values, through Card objects and through packed hands.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardBenchmark {
+    
+    private Card[] deck;
+    private Hand shuffled;
+    
+    @Setup
+    public void setUp() {
+        deck = new Card[Card.DECK_SIZE];
+        for (int i = 0; i < deck.length; i++) {
+            deck[i] = Card.ofDeckIndex(i);
+        }
+        shuffled = Hand.deal(new Random(42), Card.DECK_SIZE);
+    }
+    
+    /** Card.getValue over the whole deck. */
+    @Benchmark
+    public int getValue() {
+        int sum = 0;
+        for (Card card : deck) {
+            sum += card.getValue();
+        }
+        return sum;
+    }
+    
+    /** The same values read straight from a hand's packed codes. */
+    @Benchmark
+    public int handValueAt() {
+        int sum = 0;
+        for (int i = 0; i < shuffled.size(); i++) {
+            sum += shuffled.valueAt(i);
+        }
+        return sum;
+    }
+    
+    @Benchmark
+    public Hand deal() {
+        return Hand.deal(new Random(), 5);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.heartgame.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.heartgame.model.Card;
+import com.heartgame.model.Hand;
+import com.heartgame.service.CardStreamParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a Heart API card response: the streaming parser against the old
+ * read-to-String-then-JSON-tree approach. Run with the gc profiler to
+ * compare bytes allocated per response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardParsingBenchmark {
+    
+    @Param({"5", "52"})
+    public int cards;
+    
+    private byte[] response;
+    
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder("{\"success\": true, \"cards\": [");
+        Hand hand = Hand.deal(new Random(42), cards);
+        for (int i = 0; i < hand.size(); i++) {
+            Card card = hand.get(i);
+            json.append(i == 0 ? "" : ", ")
+                    .append("{\"suit\": \"").append(card.getSuit())
+                    .append("\", \"rank\": \"").append(card.getRank())
+                    .append("\", \"code\": \"").append(card.getDisplayName()).append("\"}");
+        }
+        response = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Benchmark
+    public Hand stream() throws IOException {
+        return CardStreamParser.parse(new ByteArrayInputStream(response), cards);
+    }
+    
+    @Benchmark
+    public List<Card> tree() {
+        String body = new String(response, StandardCharsets.UTF_8);
+        JsonObject root = JsonParser.parseString(body).getAsJsonObject();
+        JsonArray array = root.getAsJsonArray("cards");
+        List<Card> parsed = new ArrayList<>(array.size());
+        for (JsonElement element : array) {
+            JsonObject card = element.getAsJsonObject();
+            parsed.add(Card.of(card.get("suit").getAsString(), card.get("rank").getAsString()));
+        }
+        return parsed;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.heartgame.benchmarks;
+
+import com.heartgame.model.Hand;
+import com.heartgame.service.ExpressionSolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expression-tree hints and full reachable-target analysis for large hands,
+ * solved on the common fork/join pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionSolverBenchmark {
+    
+    private static final int HANDS = 64;
+    
+    @Param({"6", "8", "10"})
+    public int cards;
+    
+    private final ExpressionSolver solver = new ExpressionSolver();
+    private Hand[] hands;
+    private int[] targets;
+    private int next;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        hands = new Hand[HANDS];
+        targets = new int[HANDS];
+        for (int i = 0; i < HANDS; i++) {
+            hands[i] = Hand.deal(random, cards);
+            targets[i] = 1 + random.nextInt(ExpressionSolver.DEFAULT_VALUE_BOUND);
+        }
+    }
+    
+    @Benchmark
+    public ExpressionSolver.Hint hint() {
+        next = (next + 1) & (HANDS - 1);
+        return solver.hint(hands[next], targets[next]);
+    }
+    
+    @Benchmark
+    public int[] reachable() {
+        next = (next + 1) & (HANDS - 1);
+        return solver.reachable(hands[next]);
+    }
+}
\ No newline at end of file
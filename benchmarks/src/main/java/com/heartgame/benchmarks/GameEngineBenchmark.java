@@ -0,0 +1,98 @@
+package com.heartgame.benchmarks;
+
+import com.heartgame.model.Hand;
+import com.heartgame.model.Operation;
+import com.heartgame.model.User;
+import com.heartgame.service.GameEngine;
+import com.heartgame.util.Metrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-move cost of the game engine with a full selection, plus a whole game
+ * from deal to end. Compare metrics=true with metrics=false to see what the
+ * instrumentation costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameEngineBenchmark {
+    
+    @Param({"5", "12"})
+    public int handSize;
+    
+    @Param({"true", "false"})
+    public boolean metrics;
+    
+    private GameEngine engine;
+    private int operation;
+    private User user;
+    private Hand hand;
+    
+    @Setup
+    public void setUp() {
+        Metrics.setEnabled(metrics);
+        user = new User("bench");
+        hand = Hand.deal(new Random(42), handSize);
+        engine = new GameEngine();
+        engine.startGame(user, "Timed", 24, hand);
+        for (int i = 0; i < handSize; i++) {
+            engine.toggleCardAt(i);
+        }
+    }
+    
+    @Benchmark
+    public int calculateResult() {
+        return engine.calculateResult();
+    }
+    
+    @Benchmark
+    public int calculateScore() {
+        return engine.calculateScore(12, "Timed");
+    }
+    
+    /** Deselects and reselects the second card, refolding everything after it. */
+    @Benchmark
+    public int toggleSecondCard() {
+        engine.toggleCardAt(1);
+        engine.toggleCardAt(1);
+        return engine.calculateResult();
+    }
+    
+    /** A whole game on a fresh engine: deal, select everything, score, end. */
+    @Benchmark
+    public int fullGame() {
+        GameEngine game = new GameEngine();
+        game.startGame(user, "Timed", 24, hand);
+        for (int i = 0; i < handSize; i++) {
+            game.toggleCardAt(i);
+        }
+        boolean won = game.checkAnswer();
+        int score = game.calculateScore(12, "Timed");
+        game.endGame(won, score);
+        return score;
+    }
+    
+    /** Switches operation, refolding the whole selection. */
+    @Benchmark
+    public int setOperation() {
+        operation = (operation + 1) & 3;
+        engine.setOperation(Operation.fromOrdinal(operation));
+        return engine.calculateResult();
+    }
+}
\ No newline at end of file
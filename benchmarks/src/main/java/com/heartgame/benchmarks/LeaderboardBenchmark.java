@@ -0,0 +1,80 @@
+package com.heartgame.benchmarks;
+
+import com.heartgame.model.User;
+import com.heartgame.service.Leaderboard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leaderboard updates and queries against a populated board.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class LeaderboardBenchmark {
+    
+    @Param({"10000", "1000000"})
+    public int users;
+    
+    private Leaderboard leaderboard;
+    private User[] population;
+    private Random random;
+    
+    @Setup
+    public void setUp() {
+        random = new Random(42);
+        leaderboard = new Leaderboard();
+        population = new User[users];
+        for (int i = 0; i < users; i++) {
+            User user = new User("player" + i);
+            for (int game = random.nextInt(20); game > 0; game--) {
+                user.updateStats(random.nextBoolean(), random.nextInt(2000), 5 + random.nextInt(120));
+            }
+            population[i] = user;
+            leaderboard.update(user);
+        }
+    }
+    
+    private User anyUser() {
+        return population[random.nextInt(population.length)];
+    }
+    
+    /** One finished game: new stats moved into every board they affect. */
+    @Benchmark
+    public void update() {
+        User user = anyUser();
+        user.updateStats(random.nextBoolean(), random.nextInt(2000), 5 + random.nextInt(120));
+        leaderboard.update(user);
+    }
+    
+    @Benchmark
+    public List<Leaderboard.Entry> top10() {
+        return leaderboard.top(Leaderboard.Metric.BEST_SCORE, 10);
+    }
+    
+    @Benchmark
+    public int rankOf() {
+        return leaderboard.rankOf(Leaderboard.Metric.WIN_RATE, anyUser().getUsername());
+    }
+    
+    @Benchmark
+    public List<Leaderboard.Entry> aroundMe() {
+        return leaderboard.around(Leaderboard.Metric.BEST_SCORE, anyUser().getUsername(), 5);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,156 @@
+package com.heartgame.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.heartgame.model.User;
+import com.heartgame.service.UserJournal;
+import com.heartgame.service.UserService;
+import com.heartgame.service.UserSnapshotCodec;
+import com.heartgame.util.FileManager;
+import com.heartgame.util.LocalDateTimeAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The binary user snapshot against the pretty-printed JSON it replaced, at
+ * 1k, 100k and 1M users: encoding, decoding and opening a UserService over
+ * a data directory holding only that file. File sizes are printed when
+ * each trial sets up.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class SnapshotFormatBenchmark {
+    
+    private static final Type USERS_TYPE = new TypeToken<HashMap<String, User>>(){}.getType();
+    
+    /**
+     * {@code users} users written in {@code format} to a data directory.
+     */
+    @State(Scope.Benchmark)
+    public static class Snapshot {
+        @Param({"1000", "100000", "1000000"})
+        public int users;
+        
+        @Param({"binary", "json"})
+        public String format;
+        
+        Path directory;
+        Path file;
+        Map<String, User> data;
+        Gson gson;
+        
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            // Configured like UserService's Gson
+            gson = new GsonBuilder()
+                    .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                    .setPrettyPrinting()
+                    .create();
+            
+            Random random = new Random(42);
+            data = new HashMap<>(users * 2);
+            for (int i = 0; i < users; i++) {
+                User user = new User("player" + i);
+                for (int game = random.nextInt(20); game > 0; game--) {
+                    user.updateStats(random.nextBoolean(), random.nextInt(2000), 5 + random.nextInt(120));
+                }
+                if (user.getGamesWon() > 0) {
+                    user.unlockAchievement("FIRST_WIN");
+                }
+                if (user.getTotalGamesPlayed() >= 10) {
+                    user.unlockAchievement("DEDICATED");
+                }
+                data.put(user.getUsername(), user);
+            }
+            
+            directory = Files.createTempDirectory("heartgame-snapshot");
+            file = directory.resolve("json".equals(format) ? "users.json" : "users.bin");
+            write(this);
+            System.out.printf("%n%s snapshot of %d users: %d bytes (%.1f per user)%n",
+                    format, users, Files.size(file), (double) Files.size(file) / users);
+        }
+        
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+    
+    /**
+     * A service opened over the snapshot, closed after each open. Closing
+     * writes users.bin, which is removed again so the next open still
+     * starts from the format under test.
+     */
+    @State(Scope.Thread)
+    public static class Opened {
+        UserService service;
+        
+        @TearDown(Level.Invocation)
+        public void tearDown(Snapshot snapshot) throws IOException {
+            if (service != null) {
+                service.close();
+                service = null;
+            }
+            Files.deleteIfExists(snapshot.directory.resolve("users.journal"));
+            if ("json".equals(snapshot.format)) {
+                Files.deleteIfExists(snapshot.directory.resolve("users.bin"));
+            }
+        }
+    }
+    
+    private static void write(Snapshot snapshot) throws IOException {
+        if ("json".equals(snapshot.format)) {
+            FileManager.writeFile(snapshot.file.toString(), snapshot.gson.toJson(snapshot.data));
+        } else {
+            UserSnapshotCodec.write(snapshot.file, snapshot.data.values());
+        }
+    }
+    
+    @Benchmark
+    public void encode(Snapshot snapshot) throws IOException {
+        write(snapshot);
+    }
+    
+    @Benchmark
+    public Map<String, User> decode(Snapshot snapshot) throws IOException {
+        if ("json".equals(snapshot.format)) {
+            return snapshot.gson.fromJson(FileManager.readFile(snapshot.file.toString()), USERS_TYPE);
+        }
+        return UserSnapshotCodec.read(snapshot.file);
+    }
+    
+    @Benchmark
+    public UserService startup(Snapshot snapshot, Opened opened) {
+        opened.service = new UserService(snapshot.directory, UserJournal.FsyncPolicy.NEVER, 0);
+        return opened.service;
+    }
+}
\ No newline at end of file
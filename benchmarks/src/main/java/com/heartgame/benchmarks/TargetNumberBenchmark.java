@@ -0,0 +1,76 @@
+package com.heartgame.benchmarks;
+
+import com.heartgame.model.Hand;
+import com.heartgame.service.HeartAPIService;
+import com.heartgame.service.TargetIndex;
+import com.heartgame.service.TargetIndexBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picking a reachable target for a freshly dealt hand, solved per hand or
+ * looked up in the precomputed index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetNumberBenchmark {
+    
+    private static final int HANDS = 1024;
+    
+    @Param({"solver", "index"})
+    public String source;
+    
+    private HeartAPIService apiService;
+    private Hand[] hands;
+    private int next;
+    private Path indexFile;
+    
+    @Setup
+    public void setUp() throws IOException {
+        apiService = new HeartAPIService();
+        Random random = new Random(42);
+        hands = new Hand[HANDS];
+        for (int i = 0; i < HANDS; i++) {
+            hands[i] = Hand.deal(random, 5);
+        }
+        
+        if (source.equals("index")) {
+            indexFile = Files.createTempFile("targets", ".idx");
+            TargetIndexBuilder.build(indexFile, 5);
+            apiService.setTargetIndex(TargetIndex.open(indexFile));
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        if (indexFile != null) {
+            Files.deleteIfExists(indexFile);
+        }
+    }
+    
+    @Benchmark
+    public int generateTargetNumber() {
+        next = (next + 1) & (HANDS - 1);
+        return apiService.generateTargetNumber(hands[next]);
+    }
+}
\ No newline at end of file
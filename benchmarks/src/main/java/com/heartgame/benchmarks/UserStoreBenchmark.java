@@ -0,0 +1,138 @@
+package com.heartgame.benchmarks;
+
+import com.heartgame.model.User;
+import com.heartgame.service.UserJournal;
+import com.heartgame.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Loading and saving the whole user store at 1k, 100k and 1M users.
+ * Each operation runs once per iteration, since at 1M users a single one
+ * takes seconds.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class UserStoreBenchmark {
+    
+    /**
+     * A data directory holding a snapshot of {@code users} users, plus a live
+     * service over it. A copy of the directory taken right after the snapshot
+     * is the source for every load.
+     */
+    @State(Scope.Benchmark)
+    public static class Store {
+        @Param({"1000", "100000", "1000000"})
+        public int users;
+        
+        Path directory;
+        Path snapshot;
+        UserService service;
+        
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("heartgame-users");
+            service = open(directory);
+            
+            Random random = new Random(42);
+            for (int i = 0; i < users; i++) {
+                String username = "player" + i;
+                service.registerUser(username);
+                User user = service.login(username);
+                for (int game = random.nextInt(20); game > 0; game--) {
+                    user.updateStats(random.nextBoolean(), random.nextInt(2000), 5 + random.nextInt(120));
+                }
+                service.updateUser(user);
+                service.checkAndUnlockAchievements(user);
+            }
+            // Takes the changes out of the journal, as after a clean shutdown
+            service.saveSnapshot();
+            snapshot = copy(directory);
+        }
+        
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            service.close();
+            delete(directory);
+            delete(snapshot);
+        }
+    }
+    
+    /**
+     * A private copy of the snapshot directory for one load. The service
+     * loaded from it is the only one using its files, so it can be closed
+     * before the copy is deleted.
+     */
+    @State(Scope.Thread)
+    public static class Loaded {
+        Path directory;
+        UserService service;
+        
+        @Setup(Level.Invocation)
+        public void setUp(Store store) throws IOException {
+            directory = copy(store.snapshot);
+        }
+        
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            if (service != null) {
+                service.close();
+                service = null;
+            }
+            delete(directory);
+        }
+    }
+    
+    private static UserService open(Path directory) {
+        return new UserService(directory, UserJournal.FsyncPolicy.NEVER, 0);
+    }
+    
+    private static Path copy(Path directory) throws IOException {
+        Path copy = Files.createTempDirectory("heartgame-users");
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        return copy;
+    }
+    
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+    
+    @Benchmark
+    public void save(Store store) throws IOException {
+        store.service.saveSnapshot();
+    }
+    
+    @Benchmark
+    public UserService load(Loaded loaded) {
+        loaded.service = open(loaded.directory);
+        return loaded.service;
+    }
+}
\ No newline at end of file
@@ -1,11 +1,18 @@
 package com.heartgame;
 
+import com.heartgame.controller.StartupPipeline;
+import com.heartgame.ui.AsyncServices;
+import com.heartgame.ui.EdtWatchdog;
 import com.heartgame.ui.LoginFrame;
+import com.heartgame.util.Metrics;
 import javax.swing.SwingUtilities;
+import java.awt.GraphicsEnvironment;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main application entry point for Heart Game.
- * 
+ *
  * This class demonstrates the four themes:
  * 1. Software Design Principles - Clean separation of concerns
  * 2. Event-Driven Programming - Swing event dispatch thread
@@ -14,12 +21,59 @@ import javax.swing.SwingUtilities;
  */
 public class HeartGameApplication {
     
+    private static final StartupPipeline startup = StartupPipeline.withDefaults();
+    private static final AsyncServices services = new AsyncServices(
+            startup.getUserService(), startup.getApiService(), startup.getPrefetcher(), 4);
+    
     public static void main(String[] args) {
-        // Use Swing's event dispatch thread (Event-Driven)
-        SwingUtilities.invokeLater(() -> {
-            // Start with login screen (Virtual Identity)
-            LoginFrame loginFrame = new LoginFrame();
-            loginFrame.setVisible(true);
-        });
+        // Optional metrics dump, e.g. -Dheartgame.metrics.dumpSeconds=60
+        int dumpSeconds = Integer.getInteger("heartgame.metrics.dumpSeconds", 0);
+        if (dumpSeconds > 0) {
+            Metrics.startPeriodicDump(dumpSeconds, TimeUnit.SECONDS, System.out);
+        }
+        
+        // Users, cards and the engine warm up while the login screen shows
+        startup.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(startup::shutdown, "shutdown"));
+        
+        if (GraphicsEnvironment.isHeadless()) {
+            startup.markInteractive();
+        } else {
+            // Logs any event that holds the dispatch thread, e.g. -Dheartgame.edt.stallMillis=50
+            int stallMillis = Integer.getInteger("heartgame.edt.stallMillis", 100);
+            new EdtWatchdog(Math.max(1, stallMillis / 2), stallMillis, TimeUnit.MILLISECONDS, System.err).start();
+            
+            // Use Swing's event dispatch thread (Event-Driven)
+            SwingUtilities.invokeLater(() -> {
+                // Start with login screen (Virtual Identity)
+                LoginFrame loginFrame = new LoginFrame();
+                loginFrame.setVisible(true);
+                // Runs after the frame's first paint events
+                SwingUtilities.invokeLater(startup::markInteractive);
+            });
+        }
+        
+        // Training run for the AppCDS archive: start up fully, then exit
+        if (Boolean.getBoolean("heartgame.exitAfterStartup")) {
+            CompletableFuture.allOf(startup.getUserService(), startup.getPrefetcher(), startup.getWarmUp())
+                    .handle((ignored, error) -> null)
+                    .join();
+            System.exit(0);
+        }
+    }
+    
+    /**
+     * The startup pipeline, for screens that need the user service or the
+     * card prefetcher once they are ready.
+     */
+    public static StartupPipeline getStartup() {
+        return startup;
+    }
+    
+    /**
+     * Services for Swing code; every call completes on the event dispatch thread.
+     */
+    public static AsyncServices getServices() {
+        return services;
     }
 }
\ No newline at end of file
@@ -1,5 +1,359 @@
 package com.heartgame.controller;
 
+import com.heartgame.model.Card;
+import com.heartgame.model.GameSession;
+import com.heartgame.model.Puzzle;
+import com.heartgame.model.User;
+import com.heartgame.service.GameEngine;
+import com.heartgame.service.GameEventLog;
+import com.heartgame.service.SessionRegistry;
+import com.heartgame.service.UserService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Headless host for many concurrent game sessions (Event-Driven).
+ *
+ * Sessions are spread over a few shards by session id. Each shard is a
+ * single-threaded event loop that owns its sessions outright: every command
+ * for a session runs on the same thread, one after another, so a session's
+ * GameEngine needs no locking and sessions never see each other's state.
+ * Commands are queued and answered through CompletableFutures, which lets a
+ * UI, a simulator or a network front end drive thousands of games at once.
+ *
+ * The protocol is start, toggle, setOperation and submit. Each reply is a
+ * {@link GameStatus} snapshot of the session after the command. Every
+ * command counts as activity; sessions left idle past the timeout are
+ * evicted by the SessionRegistry and recorded as a loss.
+ */
 public class GameController {
-    // Event-driven game control methods
+    
+    /**
+     * Immutable view of a session after a command.
+     */
+    public static final class GameStatus {
+        private final String sessionId;
+        private final int targetNumber;
+        private final int result;
+        private final int selectedCount;
+        private final String operation;
+        private final boolean finished;
+        private final boolean won;
+        private final int score;
+        
+        GameStatus(String sessionId, int targetNumber, int result, int selectedCount,
+                   String operation, boolean finished, boolean won, int score) {
+            this.sessionId = sessionId;
+            this.targetNumber = targetNumber;
+            this.result = result;
+            this.selectedCount = selectedCount;
+            this.operation = operation;
+            this.finished = finished;
+            this.won = won;
+            this.score = score;
+        }
+        
+        public String getSessionId() { return sessionId; }
+        public int getTargetNumber() { return targetNumber; }
+        public int getResult() { return result; }
+        public int getSelectedCount() { return selectedCount; }
+        public String getOperation() { return operation; }
+        public boolean isFinished() { return finished; }
+        public boolean isWon() { return won; }
+        public int getScore() { return score; }
+    }
+    
+    // A session as owned by its shard
+    private static final class Slot {
+        final GameEngine engine;
+        final User user;
+        
+        Slot(GameEngine engine, User user) {
+            this.engine = engine;
+            this.user = user;
+        }
+        
+        void closeRecorder() {
+            if (engine.getRecorder() instanceof GameEventLog.SessionRecorder) {
+                ((GameEventLog.SessionRecorder) engine.getRecorder()).close();
+            }
+        }
+    }
+    
+    private static final class Shard {
+        final ExecutorService loop;
+        final Map<String, Slot> sessions = new HashMap<>();
+        
+        Shard(int index) {
+            this.loop = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "game-shard-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    private final UserService userService;
+    private final SessionRegistry registry;
+    private final Shard[] shards;
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final LongAdder gamesCompleted = new LongAdder();
+    private final long startedAt = System.nanoTime();
+    private volatile GameEventLog eventLog;
+    
+    /**
+     * Controller with one shard per available processor, evicting sessions
+     * idle for 10 minutes.
+     */
+    public GameController(UserService userService) {
+        this(userService, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Controller evicting sessions idle for 10 minutes.
+     */
+    public GameController(UserService userService, int shardCount) {
+        this(userService, shardCount, new SessionRegistry(10, TimeUnit.MINUTES));
+    }
+    
+    /**
+     * @param userService receives finished games, or null to only update the User objects
+     * @param shardCount  number of event-loop threads
+     * @param registry    tracks and evicts idle sessions; owned by this controller from now on
+     */
+    public GameController(UserService userService, int shardCount, SessionRegistry registry) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Invalid shard count: " + shardCount);
+        }
+        this.userService = userService;
+        this.registry = registry;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+        registry.setExpiryListener(this::evict);
+    }
+    
+    /**
+     * Starts a new session with the dealt cards and target.
+     */
+    public CompletableFuture<GameStatus> start(User user, String gameMode, int targetNumber, List<Card> cards) {
+        GameEngine engine = newEngine();
+        engine.startGame(user, gameMode, targetNumber, cards);
+        return host(engine, user);
+    }
+    
+    /**
+     * Starts a new session on a puzzle from the bank, scored by its difficulty tier.
+     */
+    public CompletableFuture<GameStatus> start(User user, String gameMode, Puzzle puzzle) {
+        GameEngine engine = newEngine();
+        engine.startGame(user, gameMode, puzzle);
+        return host(engine, user);
+    }
+    
+    private GameEngine newEngine() {
+        GameEngine engine = new GameEngine();
+        GameEventLog log = eventLog;
+        if (log != null) {
+            engine.setRecorder(log.newRecorder());
+        }
+        return engine;
+    }
+    
+    // Engines are set up on the caller; the queue hand-off publishes them to their shard
+    private CompletableFuture<GameStatus> host(GameEngine engine, User user) {
+        Slot slot = new Slot(engine, user);
+        String sessionId = engine.getCurrentSession().getSessionId();
+        
+        return execute(shardFor(sessionId), shard -> {
+            shard.sessions.put(sessionId, slot);
+            activeSessions.incrementAndGet();
+            registry.register(engine.getCurrentSession());
+            return statusOf(slot.engine);
+        });
+    }
+    
+    /**
+     * Toggles the card at a position in the session's hand.
+     */
+    public CompletableFuture<GameStatus> toggle(String sessionId, int position) {
+        return command(sessionId, slot -> {
+            slot.engine.toggleCardAt(position);
+            return statusOf(slot.engine);
+        });
+    }
+    
+    /**
+     * Sets the session's operation ("+", "-", "*", "/").
+     */
+    public CompletableFuture<GameStatus> setOperation(String sessionId, String operation) {
+        return command(sessionId, slot -> {
+            slot.engine.setOperation(operation);
+            return statusOf(slot.engine);
+        });
+    }
+    
+    /**
+     * Scores the current selection and ends the session. The result is
+     * recorded on the user and, if a UserService is set, persisted and
+     * checked for achievements.
+     */
+    public CompletableFuture<GameStatus> submit(String sessionId) {
+        Shard shard = shardFor(sessionId);
+        return execute(shard, ignored -> {
+            Slot slot = shard.sessions.remove(sessionId);
+            if (slot == null) {
+                throw new IllegalArgumentException("Unknown session: " + sessionId);
+            }
+            activeSessions.decrementAndGet();
+            if (!registry.complete(sessionId)) {
+                // Evicted while idle, and its eviction is still queued behind
+                // this command; it will find no slot, so end the session here
+                expire(slot);
+                throw new IllegalStateException("Session expired: " + sessionId);
+            }
+            
+            GameEngine engine = slot.engine;
+            GameSession session = engine.getCurrentSession();
+            long timeSeconds = session.getElapsedSeconds();
+            boolean won = engine.hasValidSelection() && engine.checkAnswer();
+            int score = won ? engine.calculateScore(timeSeconds, session.getGameMode()) : 0;
+            engine.endGame(won, score);
+            slot.closeRecorder();
+            
+            int changedStats = slot.user.updateStats(won, score, timeSeconds);
+            if (userService != null) {
+                userService.updateUser(slot.user);
+                userService.checkAndUnlockAchievements(slot.user, changedStats);
+            }
+            gamesCompleted.increment();
+            return statusOf(engine);
+        });
+    }
+    
+    private CompletableFuture<GameStatus> command(String sessionId, Function<Slot, GameStatus> action) {
+        return execute(shardFor(sessionId), shard -> {
+            Slot slot = shard.sessions.get(sessionId);
+            if (slot == null) {
+                throw new IllegalArgumentException("Unknown session: " + sessionId);
+            }
+            registry.touch(sessionId);
+            return action.apply(slot);
+        });
+    }
+    
+    private CompletableFuture<GameStatus> execute(Shard shard, Function<Shard, GameStatus> action) {
+        CompletableFuture<GameStatus> reply = new CompletableFuture<>();
+        try {
+            shard.loop.execute(() -> {
+                try {
+                    reply.complete(action.apply(shard));
+                } catch (RuntimeException e) {
+                    reply.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            reply.completeExceptionally(new IllegalStateException("Game controller is shut down", e));
+        }
+        return reply;
+    }
+    
+    // Called by the registry's reaper; the session is ended on the thread that owns it
+    private void evict(GameSession session) {
+        String sessionId = session.getSessionId();
+        Shard shard = shardFor(sessionId);
+        try {
+            shard.loop.execute(() -> {
+                Slot slot = shard.sessions.remove(sessionId);
+                if (slot != null) {
+                    expire(slot);
+                    activeSessions.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shut down; the sessions go with the controller
+        }
+    }
+    
+    // Ends a session evicted while idle as a loss; shard thread only
+    private void expire(Slot slot) {
+        GameEngine engine = slot.engine;
+        engine.endGame(false, 0);
+        slot.closeRecorder();
+        slot.user.updateStats(false, 0, engine.getCurrentSession().getElapsedSeconds());
+        if (userService != null) {
+            userService.updateUser(slot.user);
+        }
+    }
+    
+    private Shard shardFor(String sessionId) {
+        return shards[Math.floorMod(sessionId.hashCode(), shards.length)];
+    }
+    
+    private static GameStatus statusOf(GameEngine engine) {
+        GameSession session = engine.getCurrentSession();
+        return new GameStatus(session.getSessionId(), session.getTargetNumber(),
+                engine.calculateResult(), engine.getSelectedCards().size(), engine.getCurrentOperation(),
+                session.isFinished(), session.isWon(), session.getScore());
+    }
+    
+    /**
+     * Records the actions of every session started from now on, each
+     * session through its own recorder. Pass null to stop.
+     */
+    public void setEventLog(GameEventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+    
+    /**
+     * Number of sessions started and not yet submitted.
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+    
+    public SessionRegistry getRegistry() {
+        return registry;
+    }
+    
+    public long getGamesCompleted() {
+        return gamesCompleted.sum();
+    }
+    
+    /**
+     * Completed games per second since the controller was created.
+     */
+    public double getGamesPerSecond() {
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        return seconds > 0 ? gamesCompleted.sum() / seconds : 0.0;
+    }
+    
+    /**
+     * Stops the event loops after the commands already queued.
+     */
+    public void shutdown() {
+        registry.shutdown();
+        for (Shard shard : shards) {
+            shard.loop.shutdown();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.loop.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,258 @@
+package com.heartgame.controller;
+
+import com.heartgame.model.Card;
+import com.heartgame.model.Hand;
+import com.heartgame.model.Operation;
+import com.heartgame.model.User;
+import com.heartgame.service.CardPrefetcher;
+import com.heartgame.service.CardStreamParser;
+import com.heartgame.service.GameEngine;
+import com.heartgame.service.HeartAPIService;
+import com.heartgame.service.ReachableTargets;
+import com.heartgame.service.TargetIndex;
+import com.heartgame.service.TargetSolver;
+import com.heartgame.service.UserService;
+import com.heartgame.util.Metrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Brings the application up without making the player wait (Event-Driven).
+ *
+ * The login screen only needs Swing, so it can show at once while three
+ * independent jobs run in the background:
+ * 1. The user store is opened and its journal replayed.
+ * 2. The API service and its HTTP client are built and the card prefetcher
+ *    deals its first hands. That first request also opens the pooled TLS
+ *    connection to the Heart API, which stays alive for the first real deal.
+ *    If a target index (targets.idx) sits in the working directory it is
+ *    mapped and handed to the API service; otherwise targets are solved.
+ * 3. The game engine, target solver and card parser play through local
+ *    hands, so their classes are loaded and their hot paths compiled before
+ *    the first real game. Warm-up games count in engine.games.started.
+ * The UI calls markInteractive once its first frame is showing. The time
+ * since JVM start is then recorded as startup.interactive.
+ */
+public class StartupPipeline {
+    
+    private static final Metrics.Timer INTERACTIVE = Metrics.timer("startup.interactive");
+    private static final Metrics.Timer USERS_READY = Metrics.timer("startup.users");
+    private static final Metrics.Timer WARM_UP = Metrics.timer("startup.warmup");
+    
+    private final Supplier<UserService> userServiceFactory;
+    private final Supplier<HeartAPIService> apiServiceFactory;
+    private final int handSize;
+    private final int warmUpGames;
+    private final ExecutorService workers;
+    private final CompletableFuture<UserService> userService = new CompletableFuture<>();
+    private final CompletableFuture<HeartAPIService> apiService = new CompletableFuture<>();
+    private final CompletableFuture<CardPrefetcher> prefetcher = new CompletableFuture<>();
+    private final CompletableFuture<Void> warmedUp = new CompletableFuture<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile long interactiveMillis = -1;
+    
+    /**
+     * Nothing is built until start(); both factories then run on background
+     * threads.
+     *
+     * @param userServiceFactory opens the user store
+     * @param apiServiceFactory  builds the API service the prefetcher deals from
+     * @param warmUpGames        local games played to warm the engine
+     */
+    public StartupPipeline(Supplier<UserService> userServiceFactory, Supplier<HeartAPIService> apiServiceFactory,
+                           int handSize, int warmUpGames) {
+        this.userServiceFactory = userServiceFactory;
+        this.apiServiceFactory = apiServiceFactory;
+        this.handSize = handSize;
+        this.warmUpGames = warmUpGames;
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "startup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Pipeline for the desktop game: users in the working directory, cards
+     * from the Heart API, five-card hands.
+     */
+    public static StartupPipeline withDefaults() {
+        return new StartupPipeline(UserService::new, HeartAPIService::new, 5, 2000);
+    }
+    
+    /**
+     * Starts every background job. Returns at once.
+     */
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        
+        workers.execute(() -> {
+            long start = USERS_READY.start();
+            try {
+                userService.complete(userServiceFactory.get());
+            } catch (RuntimeException e) {
+                System.err.println("Error loading users: " + e.getMessage());
+                userService.completeExceptionally(e);
+            } finally {
+                USERS_READY.stop(start);
+            }
+        });
+        
+        workers.execute(() -> {
+            try {
+                HeartAPIService api = apiServiceFactory.get();
+                apiService.complete(api);
+                CardPrefetcher cards = new CardPrefetcher(api, handSize, 8, 3);
+                cards.start();
+                prefetcher.complete(cards);
+                openTargetIndex(api);
+            } catch (RuntimeException e) {
+                System.err.println("Error starting card prefetcher: " + e.getMessage());
+                apiService.completeExceptionally(e);
+                prefetcher.completeExceptionally(e);
+            }
+        });
+        
+        workers.execute(() -> {
+            long start = WARM_UP.start();
+            try {
+                warmUp();
+                warmedUp.complete(null);
+            } catch (IOException | RuntimeException e) {
+                // A failed warm-up only costs speed
+                System.err.println("Error warming up: " + e.getMessage());
+                warmedUp.complete(null);
+            } finally {
+                WARM_UP.stop(start);
+            }
+        });
+        workers.shutdown();
+    }
+    
+    private static void openTargetIndex(HeartAPIService api) {
+        Path file = Paths.get(TargetIndex.DEFAULT_FILE);
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            api.setTargetIndex(TargetIndex.open(file));
+        } catch (IOException e) {
+            // Without the index every target is solved on the spot
+            System.err.println("Error opening target index: " + e.getMessage());
+        }
+    }
+    
+    private void warmUp() throws IOException {
+        Random random = new Random(7);
+        GameEngine engine = new GameEngine();
+        TargetSolver solver = new TargetSolver();
+        User player = new User("warm-up");
+        Operation[] operations = Operation.values();
+        
+        for (int game = 0; game < warmUpGames; game++) {
+            Hand hand = Hand.deal(random, handSize);
+            ReachableTargets targets = solver.solve(hand);
+            engine.startGame(player, "Classic", targets.randomTarget(random, 1, Integer.MAX_VALUE, 10), hand);
+            engine.setOperation(operations[game % operations.length]);
+            for (int i = 0; i < hand.size(); i++) {
+                engine.toggleCardAt(i);
+            }
+            engine.toggleCardAt(game % hand.size());
+            if (engine.hasValidSelection() && engine.checkAnswer()) {
+                engine.calculateScore(30, "Classic");
+            }
+            
+            if (game % 100 == 0) {
+                CardStreamParser.parse(new ByteArrayInputStream(responseFor(hand)), hand.size());
+            }
+        }
+    }
+    
+    private static byte[] responseFor(Hand hand) {
+        StringBuilder json = new StringBuilder("{\"success\": true, \"cards\": [");
+        for (int i = 0; i < hand.size(); i++) {
+            Card card = hand.get(i);
+            json.append(i == 0 ? "" : ", ")
+                    .append("{\"suit\": \"").append(card.getSuit())
+                    .append("\", \"rank\": \"").append(card.getRank()).append("\"}");
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Records time-to-first-interactive. Only the first call counts.
+     */
+    public void markInteractive() {
+        if (interactiveMillis < 0) {
+            long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+            interactiveMillis = uptime;
+            INTERACTIVE.record(TimeUnit.MILLISECONDS.toNanos(uptime));
+            System.out.println("Interactive after " + uptime + " ms");
+        }
+    }
+    
+    /**
+     * Milliseconds from JVM start to markInteractive, or -1 before it.
+     */
+    public long getTimeToFirstInteractiveMillis() {
+        return interactiveMillis;
+    }
+    
+    /**
+     * Completes with the user service once the store is loaded.
+     */
+    public CompletableFuture<UserService> getUserService() {
+        return userService;
+    }
+    
+    /**
+     * Completes when the engine warm-up has finished, successfully or not.
+     */
+    public CompletableFuture<Void> getWarmUp() {
+        return warmedUp;
+    }
+    
+    /**
+     * Completes with the API service once it is built.
+     */
+    public CompletableFuture<HeartAPIService> getApiService() {
+        return apiService;
+    }
+    
+    /**
+     * Completes with the started card prefetcher.
+     */
+    public CompletableFuture<CardPrefetcher> getPrefetcher() {
+        return prefetcher;
+    }
+    
+    /**
+     * Stops prefetching and closes the user service if it was loaded.
+     */
+    public void shutdown() {
+        if (prefetcher.isDone() && !prefetcher.isCompletedExceptionally()) {
+            prefetcher.join().shutdown();
+        }
+        if (userService.isDone() && !userService.isCompletedExceptionally()) {
+            userService.join().close();
+        }
+    }
+}
\ No newline at end of file
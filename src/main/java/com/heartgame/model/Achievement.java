@@ -1,12 +1,63 @@
 package com.heartgame.model;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An unlockable achievement.
+ *
+ * Every achievement id is given a small ordinal the first time one is
+ * created, so users can keep their unlocked achievements as bits of a long.
+ * Ids beyond the first 64 get no ordinal and are tracked by id only.
+ */
 public class Achievement {
+    
+    /** Number of achievements that can be tracked as bits. */
+    public static final int MAX_ORDINALS = Long.SIZE;
+    
+    private static final Map<String, Integer> ORDINALS = new ConcurrentHashMap<>();
+    
+    private String id;
     private String name;
     private String description;
-
+    private String icon;
+    
+    public Achievement(String id, String name, String description, String icon) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.icon = icon;
+        register(id);
+    }
+    
+    /**
+     * Bit position of the achievement id, or -1 if it has none.
+     */
+    public static int ordinalOf(String id) {
+        Integer ordinal = ORDINALS.get(id);
+        return ordinal != null ? ordinal : -1;
+    }
+    
+    /**
+     * Number of ordinals handed out so far.
+     */
+    public static int ordinalCount() {
+        return ORDINALS.size();
+    }
+    
+    private static synchronized void register(String id) {
+        if (!ORDINALS.containsKey(id) && ORDINALS.size() < MAX_ORDINALS) {
+            ORDINALS.put(id, ORDINALS.size());
+        }
+    }
+    
+    public int getOrdinal() { return ordinalOf(id); }
+    
     // Getters and Setters
+    public String getId() { return id; }
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
+    public String getIcon() { return icon; }
 }
\ No newline at end of file
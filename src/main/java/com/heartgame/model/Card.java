@@ -1,49 +1,133 @@
 package com.heartgame.model;
 
-public class Card {
-    private String suit;
-    private String rank;
-    private boolean selected;
+/**
+ * A playing card.
+ *
+ * Cards are immutable flyweights: each of the 52 cards exists exactly once and
+ * is identified by a packed code with the suit in bits 4-5 and the rank index
+ * (0 = ace .. 12 = king) in bits 0-3. Everything the game asks of a card is
+ * precomputed, so reading a value or label never allocates or parses.
+ * Selection state lives in GameEngine, not on the shared card.
+ */
+public final class Card {
     
-    public Card(String suit, String rank) {
-        this.suit = suit;
-        this.rank = rank;
-        this.selected = false;
+    public static final int SUIT_COUNT = 4;
+    public static final int RANK_COUNT = 13;
+    public static final int DECK_SIZE = SUIT_COUNT * RANK_COUNT;
+    
+    private static final String[] SUITS = {"hearts", "diamonds", "clubs", "spades"};
+    private static final String[] SUIT_EMOJI = {"♥", "♦", "♣", "♠"};
+    private static final String[] RANKS = {"A", "2", "3", "4", "5", "6", "7", "8", "9", "10", "J", "Q", "K"};
+    
+    private static final Card[] BY_CODE = new Card[1 << 6];
+    
+    static {
+        for (int suit = 0; suit < SUIT_COUNT; suit++) {
+            for (int rank = 0; rank < RANK_COUNT; rank++) {
+                int code = encode(suit, rank);
+                BY_CODE[code] = new Card(code);
+            }
+        }
     }
     
-    public int getValue() {
-        switch (rank) {
-            case "A": return 1;
-            case "J": return 11;
-            case "Q": return 12;
-            case "K": return 13;
-            default:
-                try {
-                    return Integer.parseInt(rank);
-                } catch (NumberFormatException e) {
-                    return 0;
-                }
+    private final byte code;
+    private final int value;
+    private final String suit;
+    private final String rank;
+    private final String displayName;
+    
+    private Card(int code) {
+        this.code = (byte) code;
+        this.value = valueOf(code);
+        this.suit = SUITS[suitOf(code)];
+        this.rank = RANKS[rankOf(code)];
+        this.displayName = rank + " of " + suit;
+    }
+    
+    /**
+     * Returns the card for a packed code.
+     */
+    public static Card of(int code) {
+        Card card = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        if (card == null) {
+            throw new IllegalArgumentException("Invalid card code: " + code);
+        }
+        return card;
+    }
+    
+    /**
+     * Returns the card for suit and rank names as used by the Heart API.
+     */
+    public static Card of(String suit, String rank) {
+        return BY_CODE[encode(parseSuit(suit), parseRank(rank))];
+    }
+    
+    /**
+     * Returns the card at a deck position (0..51, suit-major).
+     */
+    public static Card ofDeckIndex(int index) {
+        return BY_CODE[encode(index / RANK_COUNT, index % RANK_COUNT)];
+    }
+    
+    public static int encode(int suit, int rank) {
+        return (suit << 4) | rank;
+    }
+    
+    public static int suitOf(int code) {
+        return (code >> 4) & 0x3;
+    }
+    
+    public static int rankOf(int code) {
+        return code & 0xF;
+    }
+    
+    /**
+     * Game value of a packed card (ace = 1 .. king = 13).
+     */
+    public static int valueOf(int code) {
+        return (code & 0xF) + 1;
+    }
+    
+    /**
+     * Parses a suit name (case-insensitive) into its 2-bit index.
+     */
+    public static int parseSuit(String suit) {
+        for (int i = 0; i < SUITS.length; i++) {
+            if (SUITS[i].equalsIgnoreCase(suit)) {
+                return i;
+            }
         }
+        throw new IllegalArgumentException("Unknown suit: " + suit);
+    }
+    
+    /**
+     * Parses a rank ("A", "2".."10", "J", "Q", "K") into its 4-bit index.
+     */
+    public static int parseRank(String rank) {
+        for (int i = 0; i < RANKS.length; i++) {
+            if (RANKS[i].equals(rank)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rank: " + rank);
+    }
+    
+    public int getValue() {
+        return value;
     }
     
     public String getDisplayName() {
-        return rank + " of " + suit;
+        return displayName;
     }
     
     public String getSuitEmoji() {
-        switch (suit.toLowerCase()) {
-            case "hearts": return "♥";
-            case "diamonds": return "♦";
-            case "clubs": return "♣";
-            case "spades": return "♠";
-            default: return "";
-        }
+        return SUIT_EMOJI[suitOf(code)];
     }
     
+    public int getCode() { return code; }
+    public int getDeckIndex() { return suitOf(code) * RANK_COUNT + rankOf(code); }
     public String getSuit() { return suit; }
     public String getRank() { return rank; }
-    public boolean isSelected() { return selected; }
-    public void setSelected(boolean selected) { this.selected = selected; }
     
     @Override
     public String toString() {
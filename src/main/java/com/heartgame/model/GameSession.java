@@ -1,18 +1,80 @@
 package com.heartgame.model;
 
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One round of play: the dealt cards, the target and, once finished, the outcome.
+ */
 public class GameSession {
+    
+    /** Difficulty tier of a session whose puzzle was not rated. */
+    public static final int UNRATED = -1;
+    
     private String sessionId;
+    private String username;
+    private String gameMode;
+    private int targetNumber;
+    private int difficultyTier;
+    private List<Card> cards;
     private User user;
     private long startTime;
     private long endTime;
-
+    private boolean won;
+    private int score;
+    
+    public GameSession(String username, String gameMode, int targetNumber, List<Card> cards) {
+        this(username, gameMode, targetNumber, UNRATED, cards);
+    }
+    
+    /**
+     * A session on a puzzle of known difficulty (see Puzzle).
+     */
+    public GameSession(String username, String gameMode, int targetNumber, int difficultyTier, List<Card> cards) {
+        this.sessionId = UUID.randomUUID().toString();
+        this.username = username;
+        this.gameMode = gameMode;
+        this.targetNumber = targetNumber;
+        this.difficultyTier = difficultyTier;
+        this.cards = cards;
+        this.startTime = System.currentTimeMillis();
+    }
+    
+    /**
+     * Finishes the session with its outcome.
+     */
+    public void endSession(boolean won, int score) {
+        this.endTime = System.currentTimeMillis();
+        this.won = won;
+        this.score = score;
+    }
+    
+    public boolean isFinished() {
+        return endTime != 0;
+    }
+    
+    /**
+     * Seconds played so far, or in total once the session has ended.
+     */
+    public long getElapsedSeconds() {
+        long end = isFinished() ? endTime : System.currentTimeMillis();
+        return (end - startTime) / 1000;
+    }
+    
     // Getters and Setters
     public String getSessionId() { return sessionId; }
     public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    public String getUsername() { return username; }
+    public String getGameMode() { return gameMode; }
+    public int getTargetNumber() { return targetNumber; }
+    public int getDifficultyTier() { return difficultyTier; }
+    public List<Card> getCards() { return cards; }
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
     public long getStartTime() { return startTime; }
     public void setStartTime(long startTime) { this.startTime = startTime; }
     public long getEndTime() { return endTime; }
     public void setEndTime(long endTime) { this.endTime = endTime; }
+    public boolean isWon() { return won; }
+    public int getScore() { return score; }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.heartgame.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.RandomAccess;
+
+/**
+ * An immutable hand of cards stored as packed card codes (see Card).
+ *
+ * Hand is a read-only List of Card so it can go anywhere a card list is
+ * expected; get returns the shared Card flyweight, so reading a hand never
+ * allocates. Hot paths can skip the Card entirely through code and valueAt.
+ */
+public final class Hand extends AbstractList<Card> implements RandomAccess {
+    
+    private static final Hand EMPTY = new Hand(new byte[0]);
+    
+    private final byte[] codes;
+    
+    private Hand(byte[] codes) {
+        this.codes = codes;
+    }
+    
+    /**
+     * Creates a hand from packed card codes. The array is copied.
+     */
+    public static Hand ofCodes(byte[] codes, int count) {
+        for (int i = 0; i < count; i++) {
+            Card.of(codes[i]); // validates the code
+        }
+        return count == 0 ? EMPTY : new Hand(Arrays.copyOf(codes, count));
+    }
+    
+    /**
+     * Returns the cards as a Hand, reusing the list if it already is one.
+     */
+    public static Hand of(List<Card> cards) {
+        if (cards instanceof Hand) {
+            return (Hand) cards;
+        }
+        byte[] codes = new byte[cards.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = (byte) cards.get(i).getCode();
+        }
+        return codes.length == 0 ? EMPTY : new Hand(codes);
+    }
+    
+    /**
+     * Deals distinct cards from a full deck, as a real dealer would.
+     */
+    public static Hand deal(Random random, int count) {
+        if (count < 0 || count > Card.DECK_SIZE) {
+            throw new IllegalArgumentException("Cannot deal " + count + " cards");
+        }
+        byte[] codes = new byte[count];
+        long dealt = 0L;
+        for (int i = 0; i < count; i++) {
+            int index;
+            do {
+                index = random.nextInt(Card.DECK_SIZE);
+            } while ((dealt & (1L << index)) != 0);
+            dealt |= 1L << index;
+            codes[i] = (byte) Card.ofDeckIndex(index).getCode();
+        }
+        return count == 0 ? EMPTY : new Hand(codes);
+    }
+    
+    @Override
+    public Card get(int index) {
+        return Card.of(codes[index]);
+    }
+    
+    @Override
+    public int size() {
+        return codes.length;
+    }
+    
+    /**
+     * Packed code of the card at the position.
+     */
+    public int code(int index) {
+        return codes[index];
+    }
+    
+    /**
+     * Game value of the card at the position.
+     */
+    public int valueAt(int index) {
+        return Card.valueOf(codes[index]);
+    }
+    
+    /**
+     * Position of the card in this hand, or -1.
+     */
+    public int positionOf(Card card) {
+        byte code = (byte) card.getCode();
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] == code) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Cards [from, to) of this hand as a new hand.
+     */
+    public Hand slice(int from, int to) {
+        return new Hand(Arrays.copyOfRange(codes, from, to));
+    }
+    
+    /**
+     * Copies the packed codes into {@code target} starting at {@code offset}.
+     */
+    public void copyCodes(byte[] target, int offset) {
+        System.arraycopy(codes, 0, target, offset, codes.length);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,76 @@
+package com.heartgame.model;
+
+/**
+ * The operators a player can fold the selected cards with.
+ * Each constant carries its own evaluator, so applying one is a single
+ * virtual call instead of a string switch.
+ */
+public enum Operation {
+    
+    ADD("+") {
+        @Override
+        public int apply(int result, int value) {
+            return result + value;
+        }
+    },
+    SUBTRACT("-") {
+        @Override
+        public int apply(int result, int value) {
+            return result - value;
+        }
+    },
+    MULTIPLY("*") {
+        @Override
+        public int apply(int result, int value) {
+            return result * value;
+        }
+    },
+    DIVIDE("/") {
+        @Override
+        public int apply(int result, int value) {
+            // Dividing by zero leaves the running result unchanged
+            return value != 0 ? result / value : result;
+        }
+    };
+    
+    private static final Operation[] VALUES = values();
+    
+    private final String symbol;
+    
+    Operation(String symbol) {
+        this.symbol = symbol;
+    }
+    
+    /**
+     * Folds the next card value into the running result.
+     */
+    public abstract int apply(int result, int value);
+    
+    public String getSymbol() {
+        return symbol;
+    }
+    
+    /**
+     * Looks up an operation by its symbol ("+", "-", "*", "/").
+     */
+    public static Operation fromSymbol(String symbol) {
+        for (Operation operation : VALUES) {
+            if (operation.symbol.equals(symbol)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + symbol);
+    }
+    
+    /**
+     * Looks up an operation by ordinal without copying the values array.
+     */
+    public static Operation fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+    
+    @Override
+    public String toString() {
+        return symbol;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.heartgame.model;
+
+/**
+ * A pre-generated round: a hand, a target it can reach, and how hard that
+ * target is to find (see PuzzleBankBuilder).
+ */
+public final class Puzzle {
+    
+    private final Hand hand;
+    private final int targetNumber;
+    private final int difficultyTier;
+    private final int solutionCount;
+    
+    public Puzzle(Hand hand, int targetNumber, int difficultyTier, int solutionCount) {
+        this.hand = hand;
+        this.targetNumber = targetNumber;
+        this.difficultyTier = difficultyTier;
+        this.solutionCount = solutionCount;
+    }
+    
+    public Hand getHand() {
+        return hand;
+    }
+    
+    public int getTargetNumber() {
+        return targetNumber;
+    }
+    
+    /**
+     * 0 for the easiest tier, higher for harder ones.
+     */
+    public int getDifficultyTier() {
+        return difficultyTier;
+    }
+    
+    /**
+     * Distinct solutions for the target (operator, card subset and leading card).
+     */
+    public int getSolutionCount() {
+        return solutionCount;
+    }
+    
+    @Override
+    public String toString() {
+        return "Puzzle{" + hand + " -> " + targetNumber + ", tier " + difficultyTier + "}";
+    }
+}
\ No newline at end of file
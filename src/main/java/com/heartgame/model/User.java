@@ -6,20 +6,31 @@ import java.util.List;
 
 /**
  * Represents a user in the system (Virtual Identity).
+ *
+ * A user may be played and persisted from several threads at once. Every
+ * mutation holds the user's own monitor, so each user is its own lock stripe
+ * and games of different players never contend. Single fields can be read
+ * without locking; use snapshot() for a consistent copy of all of them.
+ *
+ * Unlocked achievements are persisted as a list of ids and mirrored in a
+ * transient bitset indexed by Achievement ordinal. The bitset is rebuilt
+ * lazily after the user is loaded from JSON or new achievements are defined.
  */
 public class User {
     
     private String username;
-    private int totalGamesPlayed;
-    private int gamesWon;
-    private int gamesLost;
-    private int bestScore;
-    private long bestTimeSeconds;
-    private int currentStreak;
-    private int bestStreak;
+    private volatile int totalGamesPlayed;
+    private volatile int gamesWon;
+    private volatile int gamesLost;
+    private volatile int bestScore;
+    private volatile long bestTimeSeconds;
+    private volatile int currentStreak;
+    private volatile int bestStreak;
     private List<String> unlockedAchievements;
-    private LocalDateTime registrationDate;
-    private LocalDateTime lastLogin;
+    private transient long achievementBits;
+    private transient int achievementBitsOrdinals;
+    private volatile LocalDateTime registrationDate;
+    private volatile LocalDateTime lastLogin;
     
     public User(String username) {
         this.username = username;
@@ -35,40 +46,125 @@ public class User {
         this.lastLogin = LocalDateTime.now();
     }
     
-    public void updateStats(boolean won, int score, long timeSeconds) {
+    /**
+     * Records a finished game.
+     *
+     * @return bit mask of the {@link UserStat}s whose value changed
+     */
+    public synchronized int updateStats(boolean won, int score, long timeSeconds) {
         totalGamesPlayed++;
+        int changed = UserStat.GAMES_PLAYED.bit();
         
         if (won) {
             gamesWon++;
             currentStreak++;
+            changed |= UserStat.GAMES_WON.bit() | UserStat.CURRENT_STREAK.bit();
             
             if (currentStreak > bestStreak) {
                 bestStreak = currentStreak;
+                changed |= UserStat.BEST_STREAK.bit();
             }
             
             if (score > bestScore) {
                 bestScore = score;
+                changed |= UserStat.BEST_SCORE.bit();
             }
             
             if (timeSeconds < bestTimeSeconds) {
                 bestTimeSeconds = timeSeconds;
+                changed |= UserStat.BEST_TIME_SECONDS.bit();
             }
         } else {
             gamesLost++;
-            currentStreak = 0;
+            if (currentStreak != 0) {
+                currentStreak = 0;
+                changed |= UserStat.CURRENT_STREAK.bit();
+            }
         }
         
         lastLogin = LocalDateTime.now();
+        return changed;
+    }
+    
+    /**
+     * Restores persisted statistics, e.g. when replaying the user journal.
+     */
+    public synchronized void restoreStats(int totalGamesPlayed, int gamesWon, int gamesLost, int bestScore,
+                             long bestTimeSeconds, int currentStreak, int bestStreak, LocalDateTime lastLogin) {
+        this.totalGamesPlayed = totalGamesPlayed;
+        this.gamesWon = gamesWon;
+        this.gamesLost = gamesLost;
+        this.bestScore = bestScore;
+        this.bestTimeSeconds = bestTimeSeconds;
+        this.currentStreak = currentStreak;
+        this.bestStreak = bestStreak;
+        this.lastLogin = lastLogin;
     }
     
-    public void unlockAchievement(String achievementId) {
-        if (!unlockedAchievements.contains(achievementId)) {
-            unlockedAchievements.add(achievementId);
+    /**
+     * Unlocks an achievement. Returns false if it was already unlocked.
+     */
+    public synchronized boolean unlockAchievement(String achievementId) {
+        int ordinal = Achievement.ordinalOf(achievementId);
+        if (ordinal < 0) {
+            if (unlockedAchievements.contains(achievementId)) {
+                return false;
+            }
+        } else {
+            long bit = 1L << ordinal;
+            if ((achievementBits() & bit) != 0) {
+                return false;
+            }
+            achievementBits |= bit;
+        }
+        unlockedAchievements.add(achievementId);
+        return true;
+    }
+    
+    public synchronized boolean hasAchievement(String achievementId) {
+        int ordinal = Achievement.ordinalOf(achievementId);
+        if (ordinal < 0) {
+            return unlockedAchievements.contains(achievementId);
+        }
+        return (achievementBits() & (1L << ordinal)) != 0;
+    }
+    
+    /**
+     * Unlocked achievements as bits indexed by Achievement ordinal.
+     */
+    public synchronized long getAchievementBits() {
+        return achievementBits();
+    }
+    
+    // Must hold the monitor
+    private long achievementBits() {
+        int ordinals = Achievement.ordinalCount();
+        if (achievementBitsOrdinals != ordinals) {
+            long bits = 0L;
+            for (String id : unlockedAchievements) {
+                int ordinal = Achievement.ordinalOf(id);
+                if (ordinal >= 0) {
+                    bits |= 1L << ordinal;
+                }
+            }
+            achievementBits = bits;
+            achievementBitsOrdinals = ordinals;
         }
+        return achievementBits;
     }
     
-    public boolean hasAchievement(String achievementId) {
-        return unlockedAchievements.contains(achievementId);
+    /**
+     * Consistent copy of this user, taken without blocking other users.
+     */
+    public synchronized User snapshot() {
+        User copy = new User(username);
+        copy.restoreStats(totalGamesPlayed, gamesWon, gamesLost, bestScore,
+                bestTimeSeconds, currentStreak, bestStreak, lastLogin);
+        copy.unlockedAchievements.addAll(unlockedAchievements);
+        copy.achievementBits = achievementBits();
+        copy.achievementBitsOrdinals = achievementBitsOrdinals;
+        copy.registrationDate = registrationDate;
+        return copy;
     }
     
     public double getWinRate() {
@@ -86,8 +182,9 @@ public class User {
     public long getBestTimeSeconds() { return bestTimeSeconds; }
     public int getCurrentStreak() { return currentStreak; }
     public int getBestStreak() { return bestStreak; }
-    public List<String> getUnlockedAchievements() { return new ArrayList<>(unlockedAchievements); }
+    public synchronized List<String> getUnlockedAchievements() { return new ArrayList<>(unlockedAchievements); }
     public LocalDateTime getRegistrationDate() { return registrationDate; }
     public LocalDateTime getLastLogin() { return lastLogin; }
     public void setLastLogin(LocalDateTime lastLogin) { this.lastLogin = lastLogin; }
+    public void setRegistrationDate(LocalDateTime registrationDate) { this.registrationDate = registrationDate; }
 }
\ No newline at end of file
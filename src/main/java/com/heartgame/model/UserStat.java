@@ -0,0 +1,68 @@
+package com.heartgame.model;
+
+/**
+ * The user statistics achievement rules can depend on.
+ *
+ * User.updateStats reports which of them changed as a bit mask of
+ * {@link #bit()} values, so rules can be re-checked only when their input moved.
+ */
+public enum UserStat {
+    
+    GAMES_PLAYED {
+        @Override
+        public long read(User user) {
+            return user.getTotalGamesPlayed();
+        }
+    },
+    GAMES_WON {
+        @Override
+        public long read(User user) {
+            return user.getGamesWon();
+        }
+    },
+    BEST_SCORE {
+        @Override
+        public long read(User user) {
+            return user.getBestScore();
+        }
+    },
+    BEST_TIME_SECONDS {
+        @Override
+        public long read(User user) {
+            return user.getBestTimeSeconds();
+        }
+    },
+    CURRENT_STREAK {
+        @Override
+        public long read(User user) {
+            return user.getCurrentStreak();
+        }
+    },
+    BEST_STREAK {
+        @Override
+        public long read(User user) {
+            return user.getBestStreak();
+        }
+    };
+    
+    /** Mask with every stat's bit set. */
+    public static final int ALL = (1 << values().length) - 1;
+    
+    private static final UserStat[] VALUES = values();
+    
+    /**
+     * Current value of this stat for the user.
+     */
+    public abstract long read(User user);
+    
+    public int bit() {
+        return 1 << ordinal();
+    }
+    
+    /**
+     * Looks up a stat by ordinal without copying the values array.
+     */
+    public static UserStat fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,135 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Achievement;
+import com.heartgame.model.User;
+import com.heartgame.model.UserStat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event-triggered achievement rules.
+ *
+ * Rules are declared as thresholds on a single {@link UserStat} and indexed by
+ * that stat. After a game only the rules of stats that changed are looked at,
+ * and a rule is skipped outright once its bit is set in the user's
+ * achievement bitset. When nothing unlocks, evaluation allocates nothing.
+ *
+ * Register rules before sharing the engine between threads.
+ */
+public class AchievementEngine {
+    
+    private static final Rule[] NO_RULES = new Rule[0];
+    
+    private static final class Rule {
+        final Achievement achievement;
+        final UserStat stat;
+        final long threshold;
+        final boolean atMost;
+        final long bit;
+        
+        Rule(Achievement achievement, UserStat stat, long threshold, boolean atMost) {
+            this.achievement = achievement;
+            this.stat = stat;
+            this.threshold = threshold;
+            this.atMost = atMost;
+            this.bit = 1L << achievement.getOrdinal();
+        }
+        
+        boolean isMet(User user) {
+            long value = stat.read(user);
+            return atMost ? value <= threshold : value >= threshold;
+        }
+    }
+    
+    private final Rule[][] rulesByStat = new Rule[UserStat.values().length][];
+    private final List<Achievement> achievements = new ArrayList<>();
+    private final Map<String, Achievement> achievementsById = new HashMap<>();
+    
+    public AchievementEngine() {
+        Arrays.fill(rulesByStat, NO_RULES);
+    }
+    
+    /**
+     * Unlocks the achievement once the stat reaches at least the threshold.
+     */
+    public AchievementEngine atLeast(Achievement achievement, UserStat stat, long threshold) {
+        return addRule(new Rule(checked(achievement), stat, threshold, false));
+    }
+    
+    /**
+     * Unlocks the achievement once the stat drops to the threshold or below.
+     */
+    public AchievementEngine atMost(Achievement achievement, UserStat stat, long threshold) {
+        return addRule(new Rule(checked(achievement), stat, threshold, true));
+    }
+    
+    private Achievement checked(Achievement achievement) {
+        if (achievement.getOrdinal() < 0) {
+            throw new IllegalArgumentException("Achievement has no bit ordinal: " + achievement.getId());
+        }
+        return achievement;
+    }
+    
+    private synchronized AchievementEngine addRule(Rule rule) {
+        Rule[] rules = rulesByStat[rule.stat.ordinal()];
+        Rule[] grown = Arrays.copyOf(rules, rules.length + 1);
+        grown[rules.length] = rule;
+        // Copy on write so an evaluation in progress keeps a stable view
+        rulesByStat[rule.stat.ordinal()] = grown;
+        
+        if (achievementsById.putIfAbsent(rule.achievement.getId(), rule.achievement) == null) {
+            achievements.add(rule.achievement);
+        }
+        return this;
+    }
+    
+    /**
+     * Evaluates the rules depending on the changed stats and unlocks any that
+     * are now met.
+     *
+     * @param changedStats bit mask of {@link UserStat#bit()} values, as
+     *                     returned by User.updateStats
+     * @return newly unlocked achievements; an immutable empty list if none
+     */
+    public List<Achievement> evaluate(User user, int changedStats) {
+        List<Achievement> unlocked = Collections.emptyList();
+        long held = user.getAchievementBits();
+        
+        for (int remaining = changedStats & UserStat.ALL; remaining != 0; remaining &= remaining - 1) {
+            Rule[] rules = rulesByStat[Integer.numberOfTrailingZeros(remaining)];
+            for (Rule rule : rules) {
+                if ((held & rule.bit) != 0 || !rule.isMet(user)) {
+                    continue;
+                }
+                held |= rule.bit;
+                if (user.unlockAchievement(rule.achievement.getId())) {
+                    if (unlocked.isEmpty()) {
+                        unlocked = new ArrayList<>(2);
+                    }
+                    unlocked.add(rule.achievement);
+                }
+            }
+        }
+        return unlocked;
+    }
+    
+    /**
+     * Evaluates every rule, e.g. for users whose changes are not known.
+     */
+    public List<Achievement> evaluateAll(User user) {
+        return evaluate(user, UserStat.ALL);
+    }
+    
+    public synchronized Achievement getAchievement(String id) {
+        return achievementsById.get(id);
+    }
+    
+    public synchronized List<Achievement> getAchievements() {
+        return new ArrayList<>(achievements);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,376 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Card;
+import com.heartgame.model.Hand;
+import com.heartgame.model.Operation;
+import com.heartgame.util.Metrics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Verifies submitted answers in bulk against the rules of GameEngine: the
+ * result of folding the operation over the selected cards in order, whether
+ * that wins, and the score calculateScore gives for it.
+ *
+ * Submissions are held column by column in a Batch, with each hand packed
+ * into a long (six bits per card code) and each selection into another
+ * (four bits per hand position). Verifying one is a few shifts and
+ * additions on primitives; no engine, session or card list is created. The
+ * batch is split into ranges that are checked on a fork/join pool, and only
+ * the rejected submissions are reported.
+ */
+public class AnswerVerifier {
+    
+    /** Largest hand a batch can hold. */
+    public static final int MAX_CARDS = 10;
+    
+    /** Longest selection a batch can hold. */
+    public static final int MAX_SELECTION = 16;
+    
+    /** Submissions checked by one task before it stops splitting. */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 14;
+    
+    private static final Metrics.Counter VERIFIED = Metrics.counter("verifier.verified");
+    private static final Metrics.Counter REJECTED = Metrics.counter("verifier.rejected");
+    private static final Metrics.Timer VERIFY_TIME = Metrics.timer("verifier.batch");
+    
+    private static final byte ACCEPTED = 0;
+    
+    /**
+     * Why a submission was rejected.
+     */
+    public enum Rejection {
+        /** The hand holds an invalid or repeated card code. */
+        BAD_HAND,
+        /** The selection names a position outside the hand or one twice. */
+        BAD_SELECTION,
+        /** The claimed result is not what the selection evaluates to. */
+        WRONG_RESULT,
+        /** The claimed score is not what the game would have awarded. */
+        WRONG_SCORE;
+        
+        private static final Rejection[] VALUES = values();
+    }
+    
+    /**
+     * Submissions to verify, one primitive array per field.
+     */
+    public static final class Batch {
+        final long[] cards;
+        final byte[] handSizes;
+        final long[] selections;
+        final byte[] selectionSizes;
+        final byte[] operations;
+        final int[] targetNumbers;
+        final byte[] difficultyTiers;
+        final int[] timeSeconds;
+        final byte[] modeMultipliers;
+        final int[] claimedResults;
+        final int[] claimedScores;
+        private int size;
+        
+        public Batch(int capacity) {
+            this.cards = new long[capacity];
+            this.handSizes = new byte[capacity];
+            this.selections = new long[capacity];
+            this.selectionSizes = new byte[capacity];
+            this.operations = new byte[capacity];
+            this.targetNumbers = new int[capacity];
+            this.difficultyTiers = new byte[capacity];
+            this.timeSeconds = new int[capacity];
+            this.modeMultipliers = new byte[capacity];
+            this.claimedResults = new int[capacity];
+            this.claimedScores = new int[capacity];
+        }
+        
+        /**
+         * Adds a submission with the hand and selection already packed (see
+         * packCards and packSelection) and returns its index.
+         */
+        public int add(long cards, int handSize, long selection, int selectionSize, Operation operation,
+                       int targetNumber, int difficultyTier, long timeSeconds, String gameMode,
+                       int claimedResult, int claimedScore) {
+            if (size == this.cards.length) {
+                throw new IllegalStateException("Batch is full");
+            }
+            if (handSize < 0 || handSize > MAX_CARDS || selectionSize < 0 || selectionSize > MAX_SELECTION) {
+                throw new IllegalArgumentException("Unsupported hand or selection size: " + handSize + ", " + selectionSize);
+            }
+            if (difficultyTier < -1 || difficultyTier > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Unsupported difficulty tier: " + difficultyTier);
+            }
+            int i = size++;
+            this.cards[i] = cards;
+            this.handSizes[i] = (byte) handSize;
+            this.selections[i] = selection;
+            this.selectionSizes[i] = (byte) selectionSize;
+            this.operations[i] = (byte) operation.ordinal();
+            this.targetNumbers[i] = targetNumber;
+            this.difficultyTiers[i] = (byte) difficultyTier;
+            // calculateScore only ever uses the time truncated to an int
+            this.timeSeconds[i] = (int) timeSeconds;
+            this.modeMultipliers[i] = (byte) GameEngine.modeMultiplier(gameMode);
+            this.claimedResults[i] = claimedResult;
+            this.claimedScores[i] = claimedScore;
+            return i;
+        }
+        
+        /**
+         * Adds a submission and returns its index.
+         */
+        public int add(Hand hand, int[] selectionOrder, int selectionSize, Operation operation,
+                       int targetNumber, int difficultyTier, long timeSeconds, String gameMode,
+                       int claimedResult, int claimedScore) {
+            return add(packCards(hand), hand.size(), packSelection(selectionOrder, selectionSize), selectionSize,
+                    operation, targetNumber, difficultyTier, timeSeconds, gameMode, claimedResult, claimedScore);
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        public int capacity() {
+            return cards.length;
+        }
+        
+        /**
+         * Empties the batch for reuse; the arrays are kept.
+         */
+        public void clear() {
+            size = 0;
+        }
+    }
+    
+    /**
+     * Outcome of verifying a batch.
+     */
+    public static final class Report {
+        private final int verified;
+        private final int[] rejectedIndexes;
+        private final byte[] reasons;
+        private final int[] reasonCounts;
+        private final long elapsedNanos;
+        
+        Report(int verified, int[] rejectedIndexes, byte[] reasons, int[] reasonCounts, long elapsedNanos) {
+            this.verified = verified;
+            this.rejectedIndexes = rejectedIndexes;
+            this.reasons = reasons;
+            this.reasonCounts = reasonCounts;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        public int getVerified() { return verified; }
+        public int getRejected() { return rejectedIndexes.length; }
+        
+        /** Batch index of the n-th rejected submission, in batch order. */
+        public int getRejectedIndex(int n) { return rejectedIndexes[n]; }
+        
+        /** Why the n-th rejected submission was rejected. */
+        public Rejection getReason(int n) { return Rejection.VALUES[reasons[n] - 1]; }
+        
+        public int getCount(Rejection reason) { return reasonCounts[reason.ordinal()]; }
+        
+        public double getVerifiedPerSecond() {
+            return elapsedNanos > 0 ? verified * 1e9 / elapsedNanos : 0.0;
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("verified=%d rejected=%d", verified, rejectedIndexes.length));
+            for (Rejection reason : Rejection.VALUES) {
+                text.append(' ').append(reason.name().toLowerCase()).append('=').append(getCount(reason));
+            }
+            text.append(String.format(" elapsed=%.3fs throughput=%.0f/s", elapsedNanos / 1e9, getVerifiedPerSecond()));
+            return text.toString();
+        }
+    }
+    
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    
+    public AnswerVerifier() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+    
+    public AnswerVerifier(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Verifies every submission in the batch.
+     */
+    public Report verify(Batch batch) {
+        long start = System.nanoTime();
+        int size = batch.size();
+        
+        // Each verdict slot is written by exactly one task, so no locking
+        byte[] verdicts = new byte[size];
+        int rejected = size <= chunkSize
+                ? verifyRange(batch, verdicts, 0, size)
+                : pool.invoke(new RangeTask(batch, verdicts, 0, size, chunkSize));
+        
+        int[] rejectedIndexes = new int[rejected];
+        byte[] reasons = new byte[rejected];
+        int[] reasonCounts = new int[Rejection.VALUES.length];
+        for (int i = 0, n = 0; n < rejected; i++) {
+            if (verdicts[i] != ACCEPTED) {
+                rejectedIndexes[n] = i;
+                reasons[n++] = verdicts[i];
+                reasonCounts[verdicts[i] - 1]++;
+            }
+        }
+        
+        long elapsed = System.nanoTime() - start;
+        VERIFY_TIME.record(elapsed);
+        VERIFIED.add(size);
+        REJECTED.add(rejected);
+        return new Report(size, rejectedIndexes, reasons, reasonCounts, elapsed);
+    }
+    
+    /**
+     * Packs the card codes of a hand into a long, six bits each, first card lowest.
+     */
+    public static long packCards(Hand hand) {
+        if (hand.size() > MAX_CARDS) {
+            throw new IllegalArgumentException("Hand too large to pack: " + hand.size());
+        }
+        long packed = 0;
+        for (int i = hand.size() - 1; i >= 0; i--) {
+            packed = packed << 6 | hand.code(i);
+        }
+        return packed;
+    }
+    
+    /**
+     * Packs hand positions in selection order into a long, four bits each,
+     * first selected lowest.
+     */
+    public static long packSelection(int[] selectionOrder, int selectionSize) {
+        if (selectionSize > MAX_SELECTION) {
+            throw new IllegalArgumentException("Selection too long to pack: " + selectionSize);
+        }
+        long packed = 0;
+        for (int i = selectionSize - 1; i >= 0; i--) {
+            if (selectionOrder[i] < 0 || selectionOrder[i] > 0xF) {
+                throw new IllegalArgumentException("Hand position out of range: " + selectionOrder[i]);
+            }
+            packed = packed << 4 | selectionOrder[i];
+        }
+        return packed;
+    }
+    
+    /**
+     * Writes the verdicts for a range and returns how many were rejections.
+     */
+    private static int verifyRange(Batch batch, byte[] verdicts, int from, int to) {
+        long[] cards = batch.cards;
+        byte[] handSizes = batch.handSizes;
+        long[] selections = batch.selections;
+        byte[] selectionSizes = batch.selectionSizes;
+        byte[] operations = batch.operations;
+        int[] targetNumbers = batch.targetNumbers;
+        byte[] difficultyTiers = batch.difficultyTiers;
+        int[] timeSeconds = batch.timeSeconds;
+        byte[] modeMultipliers = batch.modeMultipliers;
+        int[] claimedResults = batch.claimedResults;
+        int[] claimedScores = batch.claimedScores;
+        
+        int rejected = 0;
+        for (int i = from; i < to; i++) {
+            byte verdict = verify(cards[i], handSizes[i], selections[i], selectionSizes[i], operations[i],
+                    targetNumbers[i], difficultyTiers[i], timeSeconds[i], modeMultipliers[i],
+                    claimedResults[i], claimedScores[i]);
+            verdicts[i] = verdict;
+            if (verdict != ACCEPTED) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+    
+    private static byte verify(long cards, int handSize, long selection, int selectionSize, int operation,
+                               int targetNumber, int difficultyTier, int timeSeconds, int modeMultiplier,
+                               int claimedResult, int claimedScore) {
+        long seen = 0;
+        for (int i = 0; i < handSize; i++) {
+            int code = (int) (cards >>> (i * 6)) & 0x3F;
+            if ((code & 0xF) >= Card.RANK_COUNT || (seen & 1L << code) != 0) {
+                return (byte) (Rejection.BAD_HAND.ordinal() + 1);
+            }
+            seen |= 1L << code;
+        }
+        
+        // The same left fold GameEngine keeps while cards are selected
+        int used = 0;
+        int result = 0;
+        for (int i = 0; i < selectionSize; i++) {
+            int position = (int) (selection >>> (i * 4)) & 0xF;
+            if (position >= handSize || (used & 1 << position) != 0) {
+                return (byte) (Rejection.BAD_SELECTION.ordinal() + 1);
+            }
+            used |= 1 << position;
+            int value = Card.valueOf((int) (cards >>> (position * 6)) & 0x3F);
+            result = i == 0 ? value : apply(operation, result, value);
+        }
+        if (result != claimedResult) {
+            return (byte) (Rejection.WRONG_RESULT.ordinal() + 1);
+        }
+        
+        // As GameController.submit: a win needs two cards and the target
+        boolean won = selectionSize >= 2 && result == targetNumber;
+        int score = won ? GameEngine.score(targetNumber, difficultyTier, selectionSize, timeSeconds, modeMultiplier) : 0;
+        return score == claimedScore ? ACCEPTED : (byte) (Rejection.WRONG_SCORE.ordinal() + 1);
+    }
+    
+    // Operation.apply by ordinal, so the fold stays a switch rather than a
+    // call through four enum subclasses
+    private static int apply(int operation, int result, int value) {
+        switch (operation) {
+            case 0:
+                return result + value;
+            case 1:
+                return result - value;
+            case 2:
+                return result * value;
+            default:
+                return value != 0 ? result / value : result;
+        }
+    }
+    
+    /**
+     * Verifies a range of the batch, splitting it in halves down to chunkSize.
+     */
+    private static final class RangeTask extends RecursiveTask<Integer> {
+        private final Batch batch;
+        private final byte[] verdicts;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        
+        RangeTask(Batch batch, byte[] verdicts, int from, int to, int chunkSize) {
+            this.batch = batch;
+            this.verdicts = verdicts;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+        
+        @Override
+        protected Integer compute() {
+            if (to - from <= chunkSize) {
+                return verifyRange(batch, verdicts, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask left = new RangeTask(batch, verdicts, from, middle, chunkSize);
+            left.fork();
+            int right = new RangeTask(batch, verdicts, middle, to, chunkSize).compute();
+            return left.join() + right;
+        }
+    }
+}
\ No newline at end of file
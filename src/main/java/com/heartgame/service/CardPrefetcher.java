@@ -0,0 +1,199 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Card;
+import com.heartgame.model.Hand;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a bounded ring buffer of pre-dealt hands so dealing never waits on
+ * the Heart API.
+ *
+ * When the buffer drops below its low-water mark a single background thread
+ * refills it with batched requests: one call for handSize * k cards is split
+ * into k hands. The API deals every request from one shuffled deck, so a batch
+ * holds at most 52 / handSize hands. If the API fails the hands are dealt
+ * locally, exactly as HeartAPIService does when it cannot parse a response.
+ *
+ * Callers take hands through nextHand, which completes immediately from the
+ * buffer or, when it is empty, as soon as the next batch arrives.
+ */
+public class CardPrefetcher {
+    
+    private final HeartAPIService apiService;
+    private final int handSize;
+    private final int lowWaterMark;
+    private final Hand[] ring;
+    private final ArrayDeque<CompletableFuture<List<Card>>> waiting;
+    private final ExecutorService refiller;
+    
+    private int head;
+    private int size;
+    private boolean refillScheduled;
+    private boolean shutdown;
+    
+    public CardPrefetcher(HeartAPIService apiService, int handSize, int capacity, int lowWaterMark) {
+        if (handSize < 1 || handSize > Card.DECK_SIZE) {
+            throw new IllegalArgumentException("Invalid hand size: " + handSize);
+        }
+        if (capacity < 1 || lowWaterMark < 0 || lowWaterMark > capacity) {
+            throw new IllegalArgumentException("Invalid buffer bounds: capacity " + capacity + ", low-water mark " + lowWaterMark);
+        }
+        this.apiService = apiService;
+        this.handSize = handSize;
+        this.lowWaterMark = lowWaterMark;
+        this.ring = new Hand[capacity];
+        this.waiting = new ArrayDeque<>();
+        this.refiller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "card-prefetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Starts filling the buffer ahead of the first deal.
+     */
+    public void start() {
+        synchronized (this) {
+            scheduleRefillIfNeeded(true);
+        }
+    }
+    
+    /**
+     * Takes the next pre-dealt hand without blocking.
+     */
+    public CompletableFuture<List<Card>> nextHand() {
+        CompletableFuture<List<Card>> future = new CompletableFuture<>();
+        Hand hand = null;
+        
+        synchronized (this) {
+            if (shutdown) {
+                future.completeExceptionally(new IllegalStateException("Card prefetcher is shut down"));
+                return future;
+            }
+            if (size > 0) {
+                hand = ring[head];
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                size--;
+            } else {
+                waiting.add(future);
+            }
+            scheduleRefillIfNeeded(false);
+        }
+        
+        if (hand != null) {
+            future.complete(hand);
+        }
+        return future;
+    }
+    
+    /**
+     * Number of hands currently buffered.
+     */
+    public synchronized int bufferedHands() {
+        return size;
+    }
+    
+    public int getCapacity() {
+        return ring.length;
+    }
+    
+    /**
+     * Stops refilling. Callers still waiting for a hand are failed.
+     */
+    public void shutdown() {
+        List<CompletableFuture<List<Card>>> abandoned;
+        synchronized (this) {
+            shutdown = true;
+            abandoned = new ArrayList<>(waiting);
+            waiting.clear();
+        }
+        refiller.shutdownNow();
+        for (CompletableFuture<List<Card>> future : abandoned) {
+            future.completeExceptionally(new IllegalStateException("Card prefetcher is shut down"));
+        }
+    }
+    
+    // Must hold the monitor
+    private void scheduleRefillIfNeeded(boolean force) {
+        if (refillScheduled || shutdown) {
+            return;
+        }
+        if (force || size < lowWaterMark || !waiting.isEmpty()) {
+            refillScheduled = true;
+            refiller.execute(this::refill);
+        }
+    }
+    
+    private void refill() {
+        boolean finished = false;
+        try {
+            while (true) {
+                int wanted;
+                synchronized (this) {
+                    wanted = ring.length - size + waiting.size();
+                    if (shutdown || wanted <= 0) {
+                        refillScheduled = false;
+                        finished = true;
+                        return;
+                    }
+                }
+                
+                int hands = Math.min(wanted, Card.DECK_SIZE / handSize);
+                Hand batch = fetchBatch(hands * handSize);
+                deliver(batch, batch.size() / handSize);
+            }
+        } finally {
+            // A refill that died must not block every later one
+            if (!finished) {
+                synchronized (this) {
+                    refillScheduled = false;
+                }
+            }
+        }
+    }
+    
+    private Hand fetchBatch(int cards) {
+        try {
+            Hand batch = Hand.of(apiService.fetchCards(cards));
+            if (batch.size() >= handSize) {
+                return batch;
+            }
+            System.err.println("Error prefetching cards: API returned " + batch.size() + " of " + cards + " cards");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error prefetching cards: " + e.getMessage());
+        }
+        return Hand.of(apiService.generateFallbackCards(cards));
+    }
+    
+    private void deliver(Hand batch, int hands) {
+        List<CompletableFuture<List<Card>>> ready = new ArrayList<>();
+        List<Hand> readyHands = new ArrayList<>();
+        
+        synchronized (this) {
+            for (int i = 0; i < hands; i++) {
+                Hand hand = batch.slice(i * handSize, (i + 1) * handSize);
+                if (!waiting.isEmpty()) {
+                    ready.add(waiting.poll());
+                    readyHands.add(hand);
+                } else if (size < ring.length) {
+                    ring[(head + size) % ring.length] = hand;
+                    size++;
+                }
+            }
+        }
+        
+        // Complete outside the lock so callbacks cannot stall the buffer
+        for (int i = 0; i < ready.size(); i++) {
+            ready.get(i).complete(readyHands.get(i));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.heartgame.service;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.heartgame.model.Card;
+import com.heartgame.model.Hand;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for Heart API card responses.
+ *
+ * Reads {"cards": [{"suit": ..., "rank": ...}, ...]} token by token with
+ * Gson's JsonReader and packs each card into a byte code as soon as it is
+ * read, so the payload is never decoded into a String, a StringBuilder or a
+ * JSON tree. Unknown fields are skipped.
+ */
+public final class CardStreamParser {
+    
+    private CardStreamParser() {
+    }
+    
+    /**
+     * Parses a card response. The stream is consumed but not closed.
+     *
+     * @param expectedCards capacity hint, usually the number of cards requested
+     * @throws IOException if the stream is not a well-formed card response
+     */
+    public static Hand parse(InputStream in, int expectedCards) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            return read(reader, expectedCards);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            // JsonReader reports valid JSON of the wrong shape (e.g. a number
+            // where a card object belongs) with unchecked exceptions
+            throw new IOException("Unexpected card response: " + e.getMessage(), e);
+        }
+    }
+    
+    private static Hand read(JsonReader reader, int expectedCards) throws IOException {
+        byte[] codes = new byte[Math.max(1, expectedCards)];
+        int count = 0;
+        boolean sawCards = false;
+        
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("cards")) {
+                reader.skipValue();
+                continue;
+            }
+            sawCards = true;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (count == codes.length) {
+                    codes = Arrays.copyOf(codes, count * 2);
+                }
+                codes[count++] = (byte) readCard(reader);
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        
+        if (!sawCards) {
+            throw new IOException("Card response has no \"cards\" array");
+        }
+        return Hand.ofCodes(codes, count);
+    }
+    
+    private static int readCard(JsonReader reader) throws IOException {
+        int suit = -1;
+        int rank = -1;
+        
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.STRING && name.equals("suit")) {
+                suit = parse(Card::parseSuit, reader.nextString());
+            } else if (reader.peek() == JsonToken.STRING && name.equals("rank")) {
+                rank = parse(Card::parseRank, reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        
+        if (suit < 0 || rank < 0) {
+            throw new IOException("Card without suit or rank at " + reader.getPath());
+        }
+        return Card.encode(suit, rank);
+    }
+    
+    private interface Field {
+        int parse(String value);
+    }
+    
+    private static int parse(Field field, String value) throws IOException {
+        try {
+            return field.parse(value);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
\ No newline at end of file
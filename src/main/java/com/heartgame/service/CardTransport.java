@@ -0,0 +1,271 @@
+package com.heartgame.service;
+
+import com.heartgame.util.LatencyHistogram;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * HTTP transport for the Heart API.
+ *
+ * One shared java.net.http.HttpClient keeps connections alive between calls.
+ * Each call gets an overall deadline that spans every attempt. Failed attempts
+ * are retried with jittered exponential backoff. When hedging is enabled, a
+ * second request is sent only if the first has not answered within the hedge
+ * delay, and whichever succeeds first wins; the other body is closed. Every
+ * request, hedges included, feeds the latency histogram and a circuit
+ * breaker; while it is open, calls fail fast so the caller can deal locally.
+ */
+public class CardTransport {
+    
+    /** Thrown instead of calling the API while the circuit breaker is open. */
+    public static class CircuitOpenException extends IOException {
+        public CircuitOpenException() {
+            super("Circuit breaker open, not calling the Heart API");
+        }
+    }
+    
+    private final HttpClient client;
+    private final Duration deadline;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration hedgeDelay;
+    private final CircuitBreaker breaker;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    
+    /**
+     * @param deadline     total time budget per call, across all attempts
+     * @param maxAttempts  attempts per call, including the first
+     * @param retryBackoff base backoff; attempt n waits a random time up to base * 2^(n-1)
+     * @param hedgeDelay   delay before a hedged request, or null to disable hedging
+     * @param breaker      breaker fed with every attempt's outcome
+     */
+    public CardTransport(Duration deadline, int maxAttempts, Duration retryBackoff,
+                         Duration hedgeDelay, CircuitBreaker breaker) {
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(deadline)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.deadline = deadline;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = retryBackoff;
+        this.hedgeDelay = hedgeDelay;
+        this.breaker = breaker;
+    }
+    
+    /**
+     * Transport with the defaults from config.json: 5 second timeout,
+     * 3 attempts, no hedging. The breaker opens when half of the last 20
+     * calls fail or take over 2 seconds, and probes again after 30 seconds.
+     */
+    public static CardTransport withDefaults() {
+        CircuitBreaker breaker = new CircuitBreaker(20, 5, 0.5, 0.5,
+                TimeUnit.SECONDS.toNanos(2), TimeUnit.SECONDS.toNanos(30));
+        return new CardTransport(Duration.ofSeconds(5), 3, Duration.ofMillis(100), null, breaker);
+    }
+    
+    /**
+     * GETs the URI and returns the body of the first 200 response.
+     *
+     * The deadline, the latency histogram and the breaker only see what the
+     * body handler reads before its response completes. Use a buffering
+     * handler such as ofByteArray so that covers the whole body; with
+     * ofInputStream a body that stalls after the headers escapes all three.
+     *
+     * @throws CircuitOpenException if the breaker is open
+     * @throws IOException if every attempt failed or the deadline passed
+     */
+    public <T> T get(URI uri, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        long deadlineAt = System.nanoTime() + deadline.toNanos();
+        IOException lastFailure = null;
+        
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            if (!breaker.allowRequest()) {
+                throw lastFailure != null ? lastFailure : new CircuitOpenException();
+            }
+            
+            long remaining = deadlineAt - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            
+            try {
+                return attempt(uri, bodyHandler, remaining);
+            } catch (IOException e) {
+                lastFailure = e;
+            }
+            
+            if (attempt < maxAttempts && !sleepBeforeRetry(attempt, deadlineAt)) {
+                break;
+            }
+        }
+        
+        throw lastFailure != null ? lastFailure : new IOException("Heart API deadline exceeded");
+    }
+    
+    private <T> T attempt(URI uri, HttpResponse.BodyHandler<T> bodyHandler, long timeoutNanos) throws IOException {
+        long deadlineAt = System.nanoTime() + timeoutNanos;
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofNanos(timeoutNanos))
+                .GET()
+                .build();
+        
+        Exchange<T> primary = new Exchange<>(request, bodyHandler);
+        Exchange<T> hedge = null;
+        CompletableFuture<HttpResponse<T>> winner = primary.done;
+        try {
+            if (hedgeDelay != null && hedgeDelay.toNanos() < timeoutNanos) {
+                try {
+                    return bodyOf(primary.done.get(hedgeDelay.toNanos(), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    // Still unanswered: hedge, if the breaker lets another call through
+                    if (breaker.allowRequest()) {
+                        hedge = new Exchange<>(request, bodyHandler);
+                        winner = firstSuccess(primary.done, hedge.done);
+                    }
+                }
+            }
+            return bodyOf(winner.get(deadlineAt - System.nanoTime(), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            cancel(winner, primary, hedge);
+            throw new IOException("Heart API request timed out", e);
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        } catch (InterruptedException e) {
+            cancel(winner, primary, hedge);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calling the Heart API", e);
+        }
+    }
+    
+    /**
+     * One request on the wire. Its outcome goes to the latency histogram and
+     * the breaker before done completes, so a retry sees it.
+     */
+    private final class Exchange<T> {
+        final CompletableFuture<HttpResponse<T>> response;
+        final CompletableFuture<HttpResponse<T>> done;
+        
+        Exchange(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+            long start = System.nanoTime();
+            this.response = client.sendAsync(request, bodyHandler);
+            this.done = response.whenComplete((result, error) -> {
+                long elapsed = System.nanoTime() - start;
+                latency.record(elapsed);
+                if (error == null && result.statusCode() == 200) {
+                    breaker.recordSuccess(elapsed);
+                } else {
+                    breaker.recordFailure(elapsed);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Completes with the first 200 response of the two, or fails once both
+     * have failed. Every other body is closed as soon as it arrives.
+     */
+    private static <T> CompletableFuture<HttpResponse<T>> firstSuccess(CompletableFuture<HttpResponse<T>> primary,
+                                                                       CompletableFuture<HttpResponse<T>> hedge) {
+        CompletableFuture<HttpResponse<T>> first = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        BiConsumer<HttpResponse<T>, Throwable> settle = (response, error) -> {
+            if (error == null && response.statusCode() == 200) {
+                if (!first.complete(response)) {
+                    discard(response);
+                }
+                return;
+            }
+            if (response != null) {
+                discard(response);
+            }
+            if (failed.incrementAndGet() == 2) {
+                first.completeExceptionally(error != null ? unwrap(error) : statusFailure(response));
+            }
+        };
+        primary.whenComplete(settle);
+        hedge.whenComplete(settle);
+        return first;
+    }
+    
+    private static <T> T bodyOf(HttpResponse<T> response) throws IOException {
+        if (response.statusCode() != 200) {
+            discard(response);
+            throw statusFailure(response);
+        }
+        return response.body();
+    }
+    
+    private static IOException statusFailure(HttpResponse<?> response) {
+        return new IOException("API request failed with response code: " + response.statusCode());
+    }
+    
+    // Cancelling the race first means a response arriving late is closed by
+    // firstSuccess instead of being handed to nobody. Without a hedge the
+    // winner is primary.done, which must stay open to record the outcome.
+    private static void cancel(CompletableFuture<?> winner, Exchange<?> primary, Exchange<?> hedge) {
+        if (hedge != null) {
+            winner.cancel(true);
+            hedge.response.cancel(true);
+        }
+        primary.response.cancel(true);
+    }
+    
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+    
+    private static IOException asIOException(Throwable error) {
+        Throwable cause = unwrap(error);
+        return cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+    
+    private static void discard(HttpResponse<?> response) {
+        if (response.body() instanceof Closeable) {
+            try {
+                ((Closeable) response.body()).close();
+            } catch (IOException ignored) {
+                // Nothing left to release
+            }
+        }
+    }
+    
+    private boolean sleepBeforeRetry(int attempt, long deadlineAt) {
+        long ceiling = retryBackoff.toNanos() << Math.min(attempt - 1, 20);
+        long backoff = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (System.nanoTime() + backoff >= deadlineAt) {
+            return false;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(backoff);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+    
+    /**
+     * Latency of individual requests, including hedges and failed ones.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
\ No newline at end of file
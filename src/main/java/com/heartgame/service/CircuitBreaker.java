@@ -0,0 +1,145 @@
+package com.heartgame.service;
+
+/**
+ * Circuit breaker guarding calls to the Heart API.
+ *
+ * The breaker tracks the outcome of the last {@code windowSize} calls. Once at
+ * least {@code minimumCalls} have been seen and either the failure rate or the
+ * rate of calls slower than {@code slowCallNanos} reaches its threshold, it
+ * opens and rejects calls for {@code openNanos}. It then lets a single trial
+ * call through (half-open): success closes it again, failure re-opens it.
+ */
+public class CircuitBreaker {
+    
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+    
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    
+    // Ring of recent outcomes: bit 0 = failed, bit 1 = slow
+    private final byte[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long timesOpened;
+    
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          double slowCallRateThreshold, long slowCallNanos, long openNanos) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Invalid breaker window: " + windowSize + "/" + minimumCalls);
+        }
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallNanos;
+        this.openNanos = openNanos;
+        this.outcomes = new byte[windowSize];
+    }
+    
+    /**
+     * Whether a call may go ahead now. A true result from a half-open breaker
+     * reserves the single trial call, so callers must report its outcome.
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    public synchronized void recordSuccess(long latencyNanos) {
+        record(false, latencyNanos >= slowCallNanos);
+    }
+    
+    public synchronized void recordFailure(long latencyNanos) {
+        record(true, latencyNanos >= slowCallNanos);
+    }
+    
+    private void record(boolean failed, boolean slow) {
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                open();
+            } else {
+                state = State.CLOSED;
+                clearWindow();
+            }
+            trialInFlight = false;
+            return;
+        }
+        
+        if (recorded == windowSize) {
+            byte evicted = outcomes[next];
+            failures -= evicted & 1;
+            slowCalls -= (evicted >> 1) & 1;
+        } else {
+            recorded++;
+        }
+        outcomes[next] = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+        failures += failed ? 1 : 0;
+        slowCalls += slow ? 1 : 0;
+        next = (next + 1) % windowSize;
+        
+        if (state == State.CLOSED && recorded >= minimumCalls
+                && (getFailureRate() >= failureRateThreshold || getSlowCallRate() >= slowCallRateThreshold)) {
+            open();
+        }
+    }
+    
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        timesOpened++;
+        clearWindow();
+    }
+    
+    private void clearWindow() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+    
+    public synchronized State getState() {
+        return state;
+    }
+    
+    /**
+     * Failure rate (0-1) over the current window.
+     */
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0.0 : (double) failures / recorded;
+    }
+    
+    /**
+     * Slow-call rate (0-1) over the current window.
+     */
+    public synchronized double getSlowCallRate() {
+        return recorded == 0 ? 0.0 : (double) slowCalls / recorded;
+    }
+    
+    public synchronized long getTimesOpened() {
+        return timesOpened;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,454 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Card;
+import com.heartgame.model.Hand;
+import com.heartgame.util.Metrics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Searches full expression trees over a hand: any two or more cards, each
+ * used at most once, combined with any mix of + - * / and any grouping.
+ * Backs "show hint" and the analysis of harder modes, unlike TargetSolver,
+ * which only covers the single-operator left fold GameEngine plays.
+ *
+ * Intermediate results are kept to whole numbers in [1, valueBound]:
+ * subtraction must stay positive and division must be exact. Any tree that
+ * goes through zero, a negative or a fraction is dropped, which is what
+ * keeps the search finite, and the bound prunes the blow-up from products.
+ *
+ * The search is a dynamic program over card subsets, smallest first. The
+ * values of a subset are the combinations of the values of every way to
+ * split it in two, so each subset is solved once from its halves. Subsets
+ * holding the same card values (a pair of sevens in two suits, say) reach
+ * the same values, so each distinct multiset is solved once and shared.
+ * The subsets of one size only depend on smaller ones and are solved in
+ * parallel on a fork/join pool. A hint stops at the first size that reaches
+ * the target, and the full hand is only ever checked split by split.
+ *
+ * Instances hold no per-call state and are thread-safe.
+ */
+public class ExpressionSolver {
+    
+    /** Largest hand the solver accepts (1023 subsets). */
+    public static final int MAX_CARDS = 10;
+    
+    /** Default cap on intermediate results. */
+    public static final int DEFAULT_VALUE_BOUND = 1000;
+    
+    // Card values are packed 6 bits each into a subset's multiset key
+    private static final int MAX_CARD_VALUE = 63;
+    
+    private static final Metrics.Timer HINT_TIMER = Metrics.timer("hints.solve");
+    
+    /**
+     * An expression that reaches a target.
+     */
+    public static final class Hint {
+        private final int target;
+        private final String expression;
+        private final int cardMask;
+        
+        Hint(int target, String expression, int cardMask) {
+            this.target = target;
+            this.expression = expression;
+            this.cardMask = cardMask;
+        }
+        
+        public int getTarget() {
+            return target;
+        }
+        
+        /** The expression over card values, e.g. "(13 - 4) * 3". */
+        public String getExpression() {
+            return expression;
+        }
+        
+        /** Hand positions the expression uses, bit i for card i. */
+        public int getCardMask() {
+            return cardMask;
+        }
+        
+        public int getCardCount() {
+            return Integer.bitCount(cardMask);
+        }
+        
+        @Override
+        public String toString() {
+            return expression + " = " + target;
+        }
+    }
+    
+    private final ForkJoinPool pool;
+    private final int valueBound;
+    
+    /**
+     * Solver on the common fork/join pool with the default value bound.
+     */
+    public ExpressionSolver() {
+        this(ForkJoinPool.commonPool(), DEFAULT_VALUE_BOUND);
+    }
+    
+    /**
+     * @param pool       pool the subsets of one size are solved on
+     * @param valueBound largest intermediate result kept
+     */
+    public ExpressionSolver(ForkJoinPool pool, int valueBound) {
+        if (valueBound < MAX_CARD_VALUE) {
+            throw new IllegalArgumentException("Value bound too small: " + valueBound);
+        }
+        this.pool = pool;
+        this.valueBound = valueBound;
+    }
+    
+    public int getValueBound() {
+        return valueBound;
+    }
+    
+    /**
+     * Finds an expression over the given cards that equals the target,
+     * preferring ones that use fewer cards. Returns null if there is none.
+     */
+    public Hint hint(List<Card> cards, int target) {
+        return hint(loadValues(cards), cards.size(), target);
+    }
+    
+    /**
+     * Finds an expression over the first {@code n} card values that equals
+     * the target, preferring ones that use fewer cards. Returns null if there
+     * is none.
+     */
+    public Hint hint(int[] cardValues, int n, int target) {
+        long start = HINT_TIMER.start();
+        try {
+            if (target < 1 || target > valueBound) {
+                return null;
+            }
+            Search search = new Search(cardValues, n);
+            for (int size = 2; size < n; size++) {
+                search.solveLayer(size);
+                Hint hint = search.hintInLayer(size, target);
+                if (hint != null) {
+                    return hint;
+                }
+            }
+            int all = (1 << n) - 1;
+            String expression = n >= 2 ? search.express(all, target, (char) 0, false) : null;
+            return expression != null ? new Hint(target, expression, all) : null;
+        } finally {
+            HINT_TIMER.stop(start);
+        }
+    }
+    
+    /**
+     * Every target some expression over the given cards reaches, ascending.
+     */
+    public int[] reachable(List<Card> cards) {
+        return reachable(loadValues(cards), cards.size());
+    }
+    
+    /**
+     * Every target some expression over the first {@code n} card values
+     * reaches, ascending.
+     */
+    public int[] reachable(int[] cardValues, int n) {
+        Search search = new Search(cardValues, n);
+        long[] union = new long[(valueBound >> 6) + 1];
+        for (int size = 2; size <= n; size++) {
+            search.solveLayer(size);
+            for (int mask : search.layers[size]) {
+                long[] bits = search.sets[mask].bits;
+                for (int i = 0; i < bits.length; i++) {
+                    union[i] |= bits[i];
+                }
+            }
+        }
+        return ValueSet.of(union).values;
+    }
+    
+    private static int[] loadValues(List<Card> cards) {
+        int n = cards.size();
+        checkSize(n);
+        int[] values = new int[n];
+        if (cards instanceof Hand) {
+            Hand hand = (Hand) cards;
+            for (int i = 0; i < n; i++) {
+                values[i] = hand.valueAt(i);
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                values[i] = cards.get(i).getValue();
+            }
+        }
+        return values;
+    }
+    
+    private static void checkSize(int n) {
+        if (n > MAX_CARDS) {
+            throw new IllegalArgumentException("Hand too large for solver: " + n + " cards");
+        }
+    }
+    
+    /**
+     * Values one subset reaches, as a bitset for lookups and a sorted array
+     * for scans.
+     */
+    private static final class ValueSet {
+        final long[] bits;
+        final int[] values;
+        
+        private ValueSet(long[] bits, int[] values) {
+            this.bits = bits;
+            this.values = values;
+        }
+        
+        static ValueSet of(long[] bits) {
+            int count = 0;
+            for (long word : bits) {
+                count += Long.bitCount(word);
+            }
+            int[] values = new int[count];
+            int next = 0;
+            for (int i = 0; i < bits.length; i++) {
+                for (long word = bits[i]; word != 0; word &= word - 1) {
+                    values[next++] = (i << 6) + Long.numberOfTrailingZeros(word);
+                }
+            }
+            return new ValueSet(bits, values);
+        }
+        
+        boolean contains(int value) {
+            int word = value >> 6;
+            return value > 0 && word < bits.length && (bits[word] & (1L << value)) != 0;
+        }
+    }
+    
+    /**
+     * One hand's subsets and the values solved so far.
+     */
+    private final class Search {
+        final int n;
+        final int[] values;
+        final long[] keys;
+        final ValueSet[] sets;
+        // Per size, one subset for each distinct multiset of card values
+        final int[][] layers;
+        // Subset that is solved in place of each subset with the same values
+        final int[] representatives;
+        
+        Search(int[] cardValues, int n) {
+            checkSize(n);
+            this.n = n;
+            this.values = Arrays.copyOf(cardValues, n);
+            this.keys = new long[1 << n];
+            this.sets = new ValueSet[1 << n];
+            this.layers = new int[n + 1][];
+            this.representatives = new int[1 << n];
+            
+            for (int i = 0; i < n; i++) {
+                if (values[i] < 1 || values[i] > MAX_CARD_VALUE) {
+                    throw new IllegalArgumentException("Card value out of range: " + values[i]);
+                }
+                long[] bits = new long[(valueBound >> 6) + 1];
+                bits[values[i] >> 6] |= 1L << values[i];
+                sets[1 << i] = ValueSet.of(bits);
+            }
+            
+            // Sorted values packed 6 bits each; no value is 0, so keys of
+            // different sizes never collide
+            int[] members = new int[n];
+            int[] layerSizes = new int[n + 1];
+            Map<Long, Integer> distinct = new HashMap<>();
+            for (int mask = 1; mask < 1 << n; mask++) {
+                int size = 0;
+                for (int bits = mask; bits != 0; bits &= bits - 1) {
+                    members[size++] = values[Integer.numberOfTrailingZeros(bits)];
+                }
+                Arrays.sort(members, 0, size);
+                long key = 0;
+                for (int i = 0; i < size; i++) {
+                    key = key << 6 | members[i];
+                }
+                keys[mask] = key;
+                Integer first = distinct.putIfAbsent(key, mask);
+                representatives[mask] = first != null ? first : mask;
+                if (first == null) {
+                    layerSizes[size]++;
+                }
+            }
+            
+            for (int size = 1; size <= n; size++) {
+                layers[size] = new int[layerSizes[size]];
+                layerSizes[size] = 0;
+            }
+            for (int mask = 1; mask < 1 << n; mask++) {
+                if (representatives[mask] == mask) {
+                    int size = Integer.bitCount(mask);
+                    layers[size][layerSizes[size]++] = mask;
+                }
+            }
+        }
+        
+        /**
+         * Solves every subset of the given size; smaller sizes must be done.
+         */
+        void solveLayer(int size) {
+            int[] masks = layers[size];
+            pool.invoke(new LayerTask(this, masks, 0, masks.length));
+            for (int mask = 1; mask < 1 << n; mask++) {
+                if (Integer.bitCount(mask) == size) {
+                    sets[mask] = sets[representatives[mask]];
+                }
+            }
+        }
+        
+        void solveSubset(int mask) {
+            long[] bits = new long[(valueBound >> 6) + 1];
+            int bound = valueBound;
+            int low = mask & -mask;
+            int rest = mask ^ low;
+            Set<Long> seen = new HashSet<>();
+            // Every split into two halves, with the lowest card on the left
+            for (int sub = rest; ; sub = (sub - 1) & rest) {
+                int left = sub | low;
+                int right = mask ^ left;
+                if (right != 0 && seen.add(keys[left])) {
+                    int[] xs = sets[left].values;
+                    int[] ys = sets[right].values;
+                    for (int x : xs) {
+                        for (int y : ys) {
+                            int sum = x + y;
+                            if (sum <= bound) {
+                                bits[sum >> 6] |= 1L << sum;
+                                long product = (long) x * y;
+                                if (product <= bound) {
+                                    bits[(int) product >> 6] |= 1L << product;
+                                }
+                            }
+                            if (x != y) {
+                                int difference = x > y ? x - y : y - x;
+                                bits[difference >> 6] |= 1L << difference;
+                            }
+                            if (x % y == 0) {
+                                int quotient = x / y;
+                                bits[quotient >> 6] |= 1L << quotient;
+                            } else if (y % x == 0) {
+                                int quotient = y / x;
+                                bits[quotient >> 6] |= 1L << quotient;
+                            }
+                        }
+                    }
+                }
+                if (sub == 0) {
+                    break;
+                }
+            }
+            sets[mask] = ValueSet.of(bits);
+        }
+        
+        Hint hintInLayer(int size, int target) {
+            for (int mask = 1; mask < 1 << n; mask++) {
+                if (Integer.bitCount(mask) == size && sets[mask].contains(target)) {
+                    return new Hint(target, express(mask, target, (char) 0, false), mask);
+                }
+            }
+            return null;
+        }
+        
+        /**
+         * An expression over exactly the cards in the mask that evaluates to
+         * the value, or null if there is none. Proper subsets must be solved.
+         * Parenthesized only where the parent operator needs it.
+         */
+        String express(int mask, int value, char parent, boolean rightOperand) {
+            if ((mask & (mask - 1)) == 0) {
+                return Integer.toString(values[Integer.numberOfTrailingZeros(mask)]);
+            }
+            int low = mask & -mask;
+            int rest = mask ^ low;
+            for (int sub = rest; ; sub = (sub - 1) & rest) {
+                int left = sub | low;
+                int right = mask ^ left;
+                if (right != 0) {
+                    ValueSet ys = sets[right];
+                    for (int x : sets[left].values) {
+                        String expression = null;
+                        char operator = 0;
+                        if (ys.contains(value - x)) {
+                            operator = '+';
+                            expression = join(left, x, operator, right, value - x);
+                        } else if (value % x == 0 && ys.contains(value / x)) {
+                            operator = '*';
+                            expression = join(left, x, operator, right, value / x);
+                        } else if (ys.contains(x - value)) {
+                            operator = '-';
+                            expression = join(left, x, operator, right, x - value);
+                        } else if (ys.contains(x + value)) {
+                            operator = '-';
+                            expression = join(right, x + value, operator, left, x);
+                        } else if (x % value == 0 && ys.contains(x / value)) {
+                            operator = '/';
+                            expression = join(left, x, operator, right, x / value);
+                        } else if ((long) x * value <= valueBound && ys.contains(x * value)) {
+                            operator = '/';
+                            expression = join(right, x * value, operator, left, x);
+                        }
+                        if (expression != null) {
+                            return needsParentheses(operator, parent, rightOperand) ? "(" + expression + ")" : expression;
+                        }
+                    }
+                }
+                if (sub == 0) {
+                    return null;
+                }
+            }
+        }
+        
+        private String join(int leftMask, int leftValue, char operator, int rightMask, int rightValue) {
+            return express(leftMask, leftValue, operator, false) + " " + operator + " "
+                    + express(rightMask, rightValue, operator, true);
+        }
+    }
+    
+    private static boolean needsParentheses(char operator, char parent, boolean rightOperand) {
+        boolean additive = operator == '+' || operator == '-';
+        if (parent == '*' || parent == '/') {
+            return additive || (parent == '/' && rightOperand);
+        }
+        return parent == '-' && rightOperand && additive;
+    }
+    
+    /**
+     * Solves a range of same-size subsets, splitting down to one per task.
+     */
+    private static final class LayerTask extends RecursiveAction {
+        private final Search search;
+        private final int[] masks;
+        private final int from;
+        private final int to;
+        
+        LayerTask(Search search, int[] masks, int from, int to) {
+            this.search = search;
+            this.masks = masks;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                search.solveSubset(masks[from]);
+            } else if (to > from) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LayerTask(search, masks, from, middle), new LayerTask(search, masks, middle, to));
+            }
+        }
+    }
+}
\ No newline at end of file
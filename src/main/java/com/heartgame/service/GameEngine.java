@@ -2,89 +2,189 @@ package com.heartgame.service;
 
 import com.heartgame.model.Card;
 import com.heartgame.model.GameSession;
+import com.heartgame.model.Hand;
+import com.heartgame.model.Operation;
+import com.heartgame.model.Puzzle;
 import com.heartgame.model.User;
+import com.heartgame.util.Metrics;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Core game logic engine.
- * 
+ *
  * This class demonstrates:
  * 1. HIGH COHESION - only contains game logic, no UI or I/O
  * 2. LOW COUPLING - works with model objects, independent of services
  */
 public class GameEngine {
     
+    /**
+     * Receives every state change of the engine, e.g. to log it for replay.
+     * Called on the thread driving the engine, so implementations must be
+     * cheap and must not call back into it.
+     */
+    public interface Recorder {
+        void started(GameSession session, Hand hand, Operation operation);
+        void toggled(int position);
+        void operationSet(Operation operation);
+        void cleared();
+        void checked(int result, boolean correct);
+        void scored(long timeSeconds, String gameMode, int score);
+        void ended(boolean won, int score);
+    }
+    
+    // Counted per game, never per move, so the move path stays unmetered
+    private static final Metrics.Counter GAMES_STARTED = Metrics.counter("engine.games.started");
+    private static final Metrics.Counter GAMES_WON = Metrics.counter("engine.games.won");
+    private static final Metrics.Counter GAMES_LOST = Metrics.counter("engine.games.lost");
+    
     private GameSession currentSession;
-    private List<Card> selectedCards;
-    private String currentOperation;
+    private Operation currentOperation;
+    
+    // Selection state: hand positions in selection order plus the running
+    // result after each of them, so appends are O(1) and a removal only
+    // refolds the cards that came after it
+    private Hand hand;
+    private final byte[] positionByCode;
+    private long selectedMask;
+    private int[] selectionOrder;
+    private int[] runningResults;
+    private int selectionSize;
+    private final List<Card> selectionView;
+    private Recorder recorder;
     
     public GameEngine() {
-        this.selectedCards = new ArrayList<>();
-        this.currentOperation = "+";
+        this.currentOperation = Operation.ADD;
+        this.hand = Hand.of(Collections.<Card>emptyList());
+        this.positionByCode = new byte[64];
+        Arrays.fill(positionByCode, (byte) -1);
+        this.selectionOrder = new int[0];
+        this.runningResults = new int[0];
+        this.selectionView = new SelectionView();
     }
     
     /**
      * Starts a new game session.
      */
     public void startGame(User user, String gameMode, int targetNumber, List<Card> cards) {
-        this.currentSession = new GameSession(user.getUsername(), gameMode, targetNumber, cards);
-        this.selectedCards.clear();
+        this.hand = Hand.of(cards);
+        start(new GameSession(user.getUsername(), gameMode, targetNumber, hand));
+    }
+    
+    /**
+     * Starts a new game session on a puzzle from the bank, scored by the
+     * puzzle's difficulty tier.
+     */
+    public void startGame(User user, String gameMode, Puzzle puzzle) {
+        this.hand = puzzle.getHand();
+        start(new GameSession(user.getUsername(), gameMode, puzzle.getTargetNumber(),
+                puzzle.getDifficultyTier(), hand));
+    }
+    
+    private void start(GameSession session) {
+        this.currentSession = session;
+        
+        Arrays.fill(positionByCode, (byte) -1);
+        for (int i = hand.size() - 1; i >= 0; i--) {
+            positionByCode[hand.code(i)] = (byte) i;
+        }
+        if (selectionOrder.length < hand.size()) {
+            selectionOrder = new int[hand.size()];
+            runningResults = new int[hand.size()];
+        }
+        resetSelection();
+        GAMES_STARTED.increment();
+        if (recorder != null) {
+            recorder.started(session, hand, currentOperation);
+        }
     }
     
     /**
-     * Toggles card selection.
+     * Toggles card selection. Cards that are not in the current hand are ignored.
      */
     public void toggleCardSelection(Card card) {
-        if (card.isSelected()) {
-            card.setSelected(false);
-            selectedCards.remove(card);
+        int position = positionByCode[card.getCode()];
+        if (position >= 0) {
+            toggleCardAt(position);
+        }
+    }
+    
+    /**
+     * Toggles selection of the card at a position in the current hand.
+     */
+    public void toggleCardAt(int position) {
+        if (position < 0 || position >= hand.size()) {
+            throw new IndexOutOfBoundsException("No card at position " + position);
+        }
+        
+        long bit = 1L << position;
+        if ((selectedMask & bit) == 0) {
+            selectedMask |= bit;
+            selectionOrder[selectionSize] = position;
+            runningResults[selectionSize] = selectionSize == 0
+                    ? hand.valueAt(position)
+                    : currentOperation.apply(runningResults[selectionSize - 1], hand.valueAt(position));
+            selectionSize++;
         } else {
-            card.setSelected(true);
-            selectedCards.add(card);
+            selectedMask &= ~bit;
+            int index = 0;
+            while (selectionOrder[index] != position) {
+                index++;
+            }
+            selectionSize--;
+            System.arraycopy(selectionOrder, index + 1, selectionOrder, index, selectionSize - index);
+            refoldFrom(index);
+        }
+        if (recorder != null) {
+            recorder.toggled(position);
         }
     }
     
+    /**
+     * Whether the card is part of the current selection.
+     */
+    public boolean isSelected(Card card) {
+        int position = positionByCode[card.getCode()];
+        return position >= 0 && (selectedMask & (1L << position)) != 0;
+    }
+    
     /**
      * Sets the current mathematical operation.
      */
     public void setOperation(String operation) {
-        this.currentOperation = operation;
+        setOperation(Operation.fromSymbol(operation));
+    }
+    
+    /**
+     * Sets the current mathematical operation.
+     */
+    public void setOperation(Operation operation) {
+        if (operation != currentOperation) {
+            this.currentOperation = operation;
+            refoldFrom(1);
+            if (recorder != null) {
+                recorder.operationSet(operation);
+            }
+        }
     }
     
     /**
      * Calculates the result of selected cards with current operation.
      */
     public int calculateResult() {
-        if (selectedCards.isEmpty()) {
-            return 0;
-        }
-        
-        int result = selectedCards.get(0).getValue();
-        
-        for (int i = 1; i < selectedCards.size(); i++) {
-            int value = selectedCards.get(i).getValue();
-            
-            switch (currentOperation) {
-                case "+":
-                    result += value;
-                    break;
-                case "-":
-                    result -= value;
-                    break;
-                case "*":
-                    result *= value;
-                    break;
-                case "/":
-                    if (value != 0) {
-                        result /= value;
-                    }
-                    break;
-            }
+        return selectionSize == 0 ? 0 : runningResults[selectionSize - 1];
+    }
+    
+    private void refoldFrom(int index) {
+        for (int i = index; i < selectionSize; i++) {
+            int value = hand.valueAt(selectionOrder[i]);
+            runningResults[i] = i == 0 ? value : currentOperation.apply(runningResults[i - 1], value);
         }
-        
-        return result;
     }
     
     /**
@@ -92,37 +192,59 @@ public class GameEngine {
      */
     public boolean checkAnswer() {
         int result = calculateResult();
-        return result == currentSession.getTargetNumber();
+        boolean correct = result == currentSession.getTargetNumber();
+        if (recorder != null) {
+            recorder.checked(result, correct);
+        }
+        return correct;
     }
     
     /**
      * Calculates score based on performance.
      */
     public int calculateScore(long timeSeconds, String gameMode) {
+        int score = score(currentSession.getTargetNumber(), currentSession.getDifficultyTier(), selectionSize,
+                timeSeconds, modeMultiplier(gameMode));
+        if (recorder != null) {
+            recorder.scored(timeSeconds, gameMode, score);
+        }
+        return score;
+    }
+    
+    /**
+     * The score for a won game, as calculateScore computes it for the
+     * current session. Static so answers can be verified without an engine.
+     */
+    public static int score(int targetNumber, int difficultyTier, int cardCount, long timeSeconds, int modeMultiplier) {
         int baseScore = 100;
         
-        // Difficulty multiplier based on target number
-        int targetNumber = currentSession.getTargetNumber();
-        int difficultyMultiplier = Math.max(1, targetNumber / 10);
+        // Difficulty multiplier: the puzzle's tier when it was rated,
+        // otherwise estimated from the target number
+        int difficultyMultiplier = difficultyTier != GameSession.UNRATED
+                ? difficultyTier + 1
+                : Math.max(1, targetNumber / 10);
         
         // Time bonus (faster = higher score)
         int timeBonus = Math.max(0, 300 - (int) timeSeconds * 5);
         
-        // Mode multiplier
-        int modeMultiplier = 1;
+        // Card usage bonus (using more cards = higher score)
+        int cardBonus = cardCount * 20;
+        
+        return (baseScore + timeBonus + cardBonus) * difficultyMultiplier * modeMultiplier;
+    }
+    
+    /**
+     * Score multiplier of a game mode.
+     */
+    public static int modeMultiplier(String gameMode) {
         switch (gameMode) {
             case "Timed":
-                modeMultiplier = 2;
-                break;
+                return 2;
             case "Streak":
-                modeMultiplier = 3;
-                break;
+                return 3;
+            default:
+                return 1;
         }
-        
-        // Card usage bonus (using more cards = higher score)
-        int cardBonus = selectedCards.size() * 20;
-        
-        return (baseScore + timeBonus + cardBonus) * difficultyMultiplier * modeMultiplier;
     }
     
     /**
@@ -131,6 +253,10 @@ public class GameEngine {
     public void endGame(boolean won, int score) {
         if (currentSession != null) {
             currentSession.endSession(won, score);
+            (won ? GAMES_WON : GAMES_LOST).increment();
+            if (recorder != null) {
+                recorder.ended(won, score);
+            }
         }
     }
     
@@ -138,7 +264,7 @@ public class GameEngine {
      * Validates if enough cards are selected.
      */
     public boolean hasValidSelection() {
-        return selectedCards.size() >= 2;
+        return selectionSize >= 2;
     }
     
     // Getters
@@ -146,18 +272,57 @@ public class GameEngine {
         return currentSession;
     }
     
+    /**
+     * Read-only live view of the selected cards in selection order.
+     */
     public List<Card> getSelectedCards() {
-        return new ArrayList<>(selectedCards);
+        return selectionView;
     }
     
     public String getCurrentOperation() {
+        return currentOperation.getSymbol();
+    }
+    
+    public Operation getOperation() {
         return currentOperation;
     }
     
     public void clearSelection() {
-        for (Card card : selectedCards) {
-            card.setSelected(false);
+        resetSelection();
+        if (recorder != null) {
+            recorder.cleared();
+        }
+    }
+    
+    /**
+     * Records every state change from now on through the recorder, or stops
+     * recording if it is null.
+     */
+    public void setRecorder(Recorder recorder) {
+        this.recorder = recorder;
+    }
+    
+    public Recorder getRecorder() {
+        return recorder;
+    }
+    
+    private void resetSelection() {
+        selectedMask = 0L;
+        selectionSize = 0;
+    }
+    
+    private class SelectionView extends AbstractList<Card> implements RandomAccess {
+        @Override
+        public Card get(int index) {
+            if (index < 0 || index >= selectionSize) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + selectionSize);
+            }
+            return hand.get(selectionOrder[index]);
+        }
+        
+        @Override
+        public int size() {
+            return selectionSize;
         }
-        selectedCards.clear();
     }
 }
\ No newline at end of file
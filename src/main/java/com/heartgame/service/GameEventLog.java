@@ -0,0 +1,451 @@
+package com.heartgame.service;
+
+import com.heartgame.model.GameSession;
+import com.heartgame.model.Hand;
+import com.heartgame.model.Operation;
+import com.heartgame.util.Metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only binary log of every game action, for auditing scores and
+ * replaying bugs (see GameEventReplayer).
+ *
+ * Each GameEngine records through its own Recorder into a private ring of
+ * fixed-width records, so recording an action is a few stores and no lock.
+ * A single writer thread drains all rings in batches into segment files
+ * named events-00000001.log, events-00000002.log, ... and starts a new
+ * segment once the current one reaches its size limit. A recorder whose
+ * ring is full waits for the writer rather than dropping actions.
+ *
+ * Segment layout (big-endian): a 16-byte header (magic, version, record
+ * size, reserved), then 24-byte records:
+ *   0   long   session number (unique within the log)
+ *   8   byte   record type
+ *   9   byte   small argument
+ *   10  short  medium argument
+ *   12  int    int argument
+ *   16  long   long argument
+ * Records of one session appear in the order they were made. A crash can
+ * leave a partial record at the end of the last segment; readers ignore it.
+ */
+public class GameEventLog implements Closeable {
+    
+    public static final int RECORD_BYTES = 24;
+    
+    /** Session started: hand size and operation, mode and tier, target, first 10 card codes. */
+    static final byte START = 1;
+    /** More card codes for a hand of over 10 cards: offset, codes. */
+    static final byte CARDS = 2;
+    /** Card toggled: hand position. */
+    static final byte TOGGLE = 3;
+    /** Operation changed: ordinal. */
+    static final byte OPERATION = 4;
+    /** Selection cleared. */
+    static final byte CLEAR = 5;
+    /** Answer checked: correct flag, result. */
+    static final byte CHECK = 6;
+    /** Score calculated: mode, score, time in seconds. */
+    static final byte SCORE = 7;
+    /** Session ended: won flag, score. */
+    static final byte END = 8;
+    
+    static final int MAGIC = 0x48474556; // "HGEV"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int CODES_PER_RECORD = 10;
+    
+    // Modes calculateScore knows; any other mode scores like the first
+    private static final String[] MODES = {"Classic", "Timed", "Streak"};
+    private static final int OTHER_MODE = 0xFF;
+    
+    private static final int BATCH_RECORDS = 4096;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    
+    private static final Metrics.Counter EVENTS_WRITTEN = Metrics.counter("events.written");
+    private static final Metrics.Counter RING_FULL_WAITS = Metrics.counter("events.ring.full");
+    private static final Metrics.Counter WRITE_ERRORS = Metrics.counter("events.write.errors");
+    
+    /**
+     * Records one engine's actions. Only the thread driving the engine may
+     * call it, one call at a time.
+     */
+    public final class SessionRecorder implements GameEngine.Recorder, Closeable {
+        private final byte[] ring;
+        private final ByteBuffer records;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+        private volatile boolean closed;
+        
+        // Producer side only
+        private long nextTail;
+        private long cachedHead;
+        private long session;
+        
+        private SessionRecorder(int capacity) {
+            this.ring = new byte[capacity * RECORD_BYTES];
+            this.records = ByteBuffer.wrap(ring);
+            this.mask = capacity - 1;
+        }
+        
+        @Override
+        public void started(GameSession gameSession, Hand hand, Operation operation) {
+            session = sessions.incrementAndGet();
+            int size = hand.size();
+            // Hands hold at most 52 cards, which leaves two bits for the operation
+            int sizeAndOperation = operation.ordinal() << 6 | size;
+            int modeAndTier = modeCode(gameSession.getGameMode()) << 8 | (gameSession.getDifficultyTier() + 1) & 0xFF;
+            append(START, sizeAndOperation, modeAndTier, gameSession.getTargetNumber(), packCodes(hand, 0));
+            for (int offset = CODES_PER_RECORD; offset < size; offset += CODES_PER_RECORD) {
+                append(CARDS, offset, 0, 0, packCodes(hand, offset));
+            }
+        }
+        
+        @Override
+        public void toggled(int position) {
+            append(TOGGLE, position, 0, 0, 0L);
+        }
+        
+        @Override
+        public void operationSet(Operation operation) {
+            append(OPERATION, operation.ordinal(), 0, 0, 0L);
+        }
+        
+        @Override
+        public void cleared() {
+            append(CLEAR, 0, 0, 0, 0L);
+        }
+        
+        @Override
+        public void checked(int result, boolean correct) {
+            append(CHECK, correct ? 1 : 0, 0, result, 0L);
+        }
+        
+        @Override
+        public void scored(long timeSeconds, String gameMode, int score) {
+            append(SCORE, modeCode(gameMode), 0, score, timeSeconds);
+        }
+        
+        @Override
+        public void ended(boolean won, int score) {
+            append(END, won ? 1 : 0, 0, score, 0L);
+        }
+        
+        /**
+         * Stops recording; records already made are still written.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            LockSupport.unpark(writer);
+        }
+        
+        private void append(byte type, int small, int medium, int value, long wide) {
+            long position = nextTail;
+            if (position - cachedHead > mask) {
+                awaitSpace(position);
+            }
+            int offset = (int) (position & mask) * RECORD_BYTES;
+            records.putLong(offset, session);
+            records.put(offset + 8, type);
+            records.put(offset + 9, (byte) small);
+            records.putShort(offset + 10, (short) medium);
+            records.putInt(offset + 12, value);
+            records.putLong(offset + 16, wide);
+            nextTail = position + 1;
+            tail.lazySet(nextTail);
+            // Nudge the writer every half ring
+            if ((nextTail & (mask >> 1)) == 0) {
+                LockSupport.unpark(writer);
+            }
+        }
+        
+        private void awaitSpace(long position) {
+            cachedHead = head.get();
+            if (position - cachedHead <= mask) {
+                return;
+            }
+            RING_FULL_WAITS.increment();
+            while (position - (cachedHead = head.get()) > mask) {
+                if (closed || !writer.isAlive()) {
+                    throw new IllegalStateException("Game event log is closed");
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(10_000);
+            }
+        }
+        
+        /**
+         * Copies pending records into the batch, writing it out whenever it
+         * fills. Writer thread only.
+         */
+        private void drainTo(ByteBuffer batch) throws IOException {
+            long from = head.get();
+            long to = tail.get();
+            while (from < to) {
+                if (!batch.hasRemaining()) {
+                    writeBatch(batch);
+                }
+                int index = (int) (from & mask);
+                int count = (int) Math.min(Math.min(to - from, mask + 1 - index), batch.remaining() / RECORD_BYTES);
+                batch.put(ring, index * RECORD_BYTES, count * RECORD_BYTES);
+                from += count;
+                head.lazySet(from);
+            }
+        }
+        
+        private boolean isDrained() {
+            return head.get() == tail.get();
+        }
+    }
+    
+    private final Path directory;
+    private final int ringRecords;
+    private final long segmentBytes;
+    private final AtomicLong sessions;
+    private final ConcurrentLinkedQueue<SessionRecorder> added = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final Thread writer;
+    private volatile boolean running = true;
+    
+    // Writer thread only
+    private final List<SessionRecorder> recorders = new ArrayList<>();
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_RECORDS * RECORD_BYTES);
+    private FileChannel segment;
+    private int segmentIndex;
+    private long segmentSize;
+    
+    /**
+     * Log with rings of 256 records and 64 MB segments.
+     */
+    public GameEventLog(Path directory) throws IOException {
+        this(directory, 256, 64L << 20);
+    }
+    
+    /**
+     * @param directory    where segments are written; existing ones are kept
+     * @param ringRecords  records buffered per recorder, a power of two
+     * @param segmentBytes size at which a new segment is started
+     */
+    public GameEventLog(Path directory, int ringRecords, long segmentBytes) throws IOException {
+        if (ringRecords < 2 || Integer.bitCount(ringRecords) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two: " + ringRecords);
+        }
+        if (segmentBytes < HEADER_BYTES + RECORD_BYTES) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.ringRecords = ringRecords;
+        this.segmentBytes = segmentBytes;
+        // Session numbers stay unique across restarts unless a million
+        // sessions start within one millisecond
+        this.sessions = new AtomicLong(System.currentTimeMillis() << 20);
+        
+        Files.createDirectories(directory);
+        List<Path> existing = segments(directory);
+        segmentIndex = existing.isEmpty() ? 0 : segmentNumber(existing.get(existing.size() - 1));
+        openNextSegment();
+        
+        this.writer = new Thread(this::runWriter, "game-event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    /**
+     * A recorder with its own ring, for one GameEngine.
+     */
+    public SessionRecorder newRecorder() {
+        if (!running) {
+            throw new IllegalStateException("Game event log is closed");
+        }
+        SessionRecorder recorder = new SessionRecorder(ringRecords);
+        added.add(recorder);
+        return recorder;
+    }
+    
+    /**
+     * Waits until every record made before this call is written to a segment.
+     */
+    public void flush() {
+        // New recorders first: the writer moves them over under the lock
+        List<SessionRecorder> pending = new ArrayList<>(added);
+        drainLock.lock();
+        try {
+            pending.addAll(recorders);
+        } finally {
+            drainLock.unlock();
+        }
+        for (SessionRecorder recorder : pending) {
+            while (!recorder.isDrained() && writer.isAlive()) {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(100_000);
+            }
+        }
+        // The pass that drained the last ring has written its batch once it lets go
+        drainLock.lock();
+        drainLock.unlock();
+    }
+    
+    /**
+     * Writes every remaining record and closes the current segment.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the game event log", e);
+        }
+        segment.force(false);
+        segment.close();
+    }
+    
+    /**
+     * The segments in a log directory, oldest first.
+     */
+    public static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "events-*.log")) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        // Fixed-width numbers sort by name
+        segments.sort(null);
+        return segments;
+    }
+    
+    static int modeCode(String gameMode) {
+        for (int i = 0; i < MODES.length; i++) {
+            if (MODES[i].equals(gameMode)) {
+                return i;
+            }
+        }
+        return OTHER_MODE;
+    }
+    
+    static String modeName(int code) {
+        return code < MODES.length ? MODES[code] : MODES[0];
+    }
+    
+    private static long packCodes(Hand hand, int offset) {
+        long codes = 0L;
+        int end = Math.min(hand.size(), offset + CODES_PER_RECORD);
+        for (int i = end - 1; i >= offset; i--) {
+            codes = codes << 6 | hand.code(i);
+        }
+        return codes;
+    }
+    
+    private static int segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring("events-".length(), name.length() - ".log".length()));
+    }
+    
+    private void runWriter() {
+        boolean closing = false;
+        while (true) {
+            boolean wrote;
+            drainLock.lock();
+            try {
+                wrote = drainAll();
+            } finally {
+                drainLock.unlock();
+            }
+            if (closing && !wrote) {
+                return;
+            }
+            if (!running) {
+                // One more pass for anything recorded while we were writing
+                closing = true;
+            } else if (!wrote) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+    
+    private boolean drainAll() {
+        SessionRecorder recorder;
+        while ((recorder = added.poll()) != null) {
+            recorders.add(recorder);
+        }
+        
+        boolean wrote = false;
+        try {
+            for (int i = recorders.size() - 1; i >= 0; i--) {
+                recorder = recorders.get(i);
+                // Read closed first: a recorder closed and then drained is done
+                boolean closed = recorder.closed;
+                wrote |= !recorder.isDrained();
+                recorder.drainTo(batch);
+                if (closed) {
+                    SessionRecorder last = recorders.remove(recorders.size() - 1);
+                    if (last != recorder) {
+                        recorders.set(i, last);
+                    }
+                }
+            }
+            if (batch.position() > 0) {
+                writeBatch(batch);
+            }
+        } catch (IOException e) {
+            WRITE_ERRORS.increment();
+            System.err.println("Error writing game events: " + e.getMessage());
+            batch.clear();
+        }
+        return wrote;
+    }
+    
+    private void writeBatch(ByteBuffer batch) throws IOException {
+        batch.flip();
+        EVENTS_WRITTEN.add(batch.remaining() / RECORD_BYTES);
+        while (batch.hasRemaining()) {
+            long room = (segmentBytes - segmentSize) / RECORD_BYTES * RECORD_BYTES;
+            if (room <= 0) {
+                segment.close();
+                openNextSegment();
+                continue;
+            }
+            int limit = batch.limit();
+            batch.limit((int) Math.min(limit, batch.position() + room));
+            while (batch.hasRemaining()) {
+                segmentSize += segment.write(batch);
+            }
+            batch.limit(limit);
+        }
+        batch.clear();
+    }
+    
+    private void openNextSegment() throws IOException {
+        segmentIndex++;
+        Path file = directory.resolve(String.format("events-%08d.log", segmentIndex));
+        segment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putInt(0).flip();
+        while (header.hasRemaining()) {
+            segment.write(header);
+        }
+        segmentSize = HEADER_BYTES;
+    }
+}
\ No newline at end of file
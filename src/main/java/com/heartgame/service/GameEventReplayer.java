@@ -0,0 +1,290 @@
+package com.heartgame.service;
+
+import com.heartgame.model.GameSession;
+import com.heartgame.model.Hand;
+import com.heartgame.model.Operation;
+import com.heartgame.model.Puzzle;
+import com.heartgame.model.User;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Re-drives GameEngine from a GameEventLog and checks that every recorded
+ * answer check and score comes out the same again.
+ *
+ * Segments are memory-mapped and read front to back. Each session gets an
+ * engine from a small pool when it starts and gives it back when it ends,
+ * so replay allocates little beyond what startGame does. Records of a
+ * session whose start is not in the log (e.g. an older segment was removed)
+ * are skipped and counted as orphaned.
+ *
+ * Usage: GameEventReplayer [log-directory]
+ */
+public class GameEventReplayer {
+    
+    private static final int MAX_SAMPLES = 10;
+    
+    /**
+     * Outcome of a replay.
+     */
+    public static final class Report {
+        private final long records;
+        private final long sessions;
+        private final long checks;
+        private final long scores;
+        private final long orphaned;
+        private final long mismatches;
+        private final List<String> samples;
+        private final long elapsedNanos;
+        
+        Report(long records, long sessions, long checks, long scores, long orphaned, long mismatches,
+               List<String> samples, long elapsedNanos) {
+            this.records = records;
+            this.sessions = sessions;
+            this.checks = checks;
+            this.scores = scores;
+            this.orphaned = orphaned;
+            this.mismatches = mismatches;
+            this.samples = samples;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        public long getRecords() { return records; }
+        public long getSessions() { return sessions; }
+        public long getChecks() { return checks; }
+        public long getScores() { return scores; }
+        public long getOrphaned() { return orphaned; }
+        public long getMismatches() { return mismatches; }
+        
+        /** The first few mismatches, described. */
+        public List<String> getSamples() { return samples; }
+        
+        public double getRecordsPerSecond() {
+            return elapsedNanos > 0 ? records * 1e9 / elapsedNanos : 0.0;
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("records=%d sessions=%d checks=%d scores=%d orphaned=%d mismatches=%d "
+                            + "elapsed=%.2fs throughput=%.0f records/s%n",
+                    records, sessions, checks, scores, orphaned, mismatches, elapsedNanos / 1e9, getRecordsPerSecond()));
+            for (String sample : samples) {
+                text.append("  ").append(sample).append(System.lineSeparator());
+            }
+            return text.toString();
+        }
+    }
+    
+    // A session being replayed; the engine starts once the whole hand is read
+    private static final class Replay {
+        final GameEngine engine = new GameEngine();
+        final byte[] codes = new byte[64];
+        int handSize;
+        Operation operation;
+        int cardsRead;
+        int targetNumber;
+        String gameMode;
+        int difficultyTier;
+    }
+    
+    private final User user = new User("replay");
+    private final Map<Long, Replay> sessions = new HashMap<>();
+    private final ArrayDeque<Replay> pool = new ArrayDeque<>();
+    private final List<String> samples = new ArrayList<>();
+    private long records;
+    private long started;
+    private long checks;
+    private long scores;
+    private long orphaned;
+    private long mismatches;
+    
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "events");
+        System.out.print(new GameEventReplayer().replay(directory));
+    }
+    
+    /**
+     * Replays every segment in the log directory, oldest first.
+     */
+    public Report replay(Path directory) throws IOException {
+        return replay(GameEventLog.segments(directory));
+    }
+    
+    /**
+     * Replays the segments in order. Sessions still open at the end are
+     * kept, so a later call can continue with the next segments.
+     */
+    public Report replay(List<Path> segments) throws IOException {
+        long start = System.nanoTime();
+        long recordsBefore = records;
+        long startedBefore = started;
+        long checksBefore = checks;
+        long scoresBefore = scores;
+        long orphanedBefore = orphaned;
+        long mismatchesBefore = mismatches;
+        
+        for (Path segment : segments) {
+            replaySegment(segment);
+        }
+        
+        return new Report(records - recordsBefore, started - startedBefore, checks - checksBefore,
+                scores - scoresBefore, orphaned - orphanedBefore, mismatches - mismatchesBefore,
+                new ArrayList<>(samples), System.nanoTime() - start);
+    }
+    
+    private void replaySegment(Path segment) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < GameEventLog.HEADER_BYTES || buffer.getInt(0) != GameEventLog.MAGIC
+                || buffer.getInt(4) != GameEventLog.VERSION || buffer.getInt(8) != GameEventLog.RECORD_BYTES) {
+            throw new IOException("Not a game event log segment (or unsupported version): " + segment);
+        }
+        
+        // A partial record at the end is a torn write and is ignored
+        int end = buffer.capacity() - (buffer.capacity() - GameEventLog.HEADER_BYTES) % GameEventLog.RECORD_BYTES;
+        long lastSession = 0;
+        Replay last = null;
+        for (int offset = GameEventLog.HEADER_BYTES; offset < end; offset += GameEventLog.RECORD_BYTES) {
+            records++;
+            long session = buffer.getLong(offset);
+            byte type = buffer.get(offset + 8);
+            
+            if (type == GameEventLog.START) {
+                try {
+                    last = start(session, buffer, offset);
+                    lastSession = session;
+                } catch (RuntimeException e) {
+                    mismatch("session " + session + ": replay failed on start: " + e.getMessage());
+                    sessions.remove(session);
+                    last = null;
+                }
+                continue;
+            }
+            Replay replay = last != null && session == lastSession ? last : sessions.get(session);
+            if (replay == null) {
+                orphaned++;
+                continue;
+            }
+            last = replay;
+            lastSession = session;
+            
+            try {
+                if (apply(session, replay, type, buffer, offset)) {
+                    sessions.remove(session);
+                    pool.push(replay);
+                    last = null;
+                }
+            } catch (RuntimeException e) {
+                mismatch("session " + session + ": replay failed on record type " + type + ": " + e.getMessage());
+                sessions.remove(session);
+                last = null;
+            }
+        }
+    }
+    
+    private Replay start(long session, MappedByteBuffer buffer, int offset) {
+        Replay replay = pool.isEmpty() ? new Replay() : pool.pop();
+        int modeAndTier = buffer.getShort(offset + 10) & 0xFFFF;
+        int sizeAndOperation = buffer.get(offset + 9) & 0xFF;
+        replay.handSize = sizeAndOperation & 0x3F;
+        replay.operation = Operation.fromOrdinal(sizeAndOperation >>> 6);
+        replay.cardsRead = 0;
+        replay.gameMode = GameEventLog.modeName(modeAndTier >>> 8);
+        replay.difficultyTier = (modeAndTier & 0xFF) - 1;
+        replay.targetNumber = buffer.getInt(offset + 12);
+        sessions.put(session, replay);
+        started++;
+        readCards(replay, 0, buffer.getLong(offset + 16));
+        return replay;
+    }
+    
+    private void readCards(Replay replay, int from, long packed) {
+        int end = Math.min(replay.handSize, from + GameEventLog.CODES_PER_RECORD);
+        for (int i = from; i < end; i++) {
+            replay.codes[i] = (byte) (packed & 0x3F);
+            packed >>>= 6;
+        }
+        replay.cardsRead = end;
+        if (end == replay.handSize) {
+            Hand hand = Hand.ofCodes(replay.codes, replay.handSize);
+            if (replay.difficultyTier == GameSession.UNRATED) {
+                replay.engine.startGame(user, replay.gameMode, replay.targetNumber, hand);
+            } else {
+                replay.engine.startGame(user, replay.gameMode,
+                        new Puzzle(hand, replay.targetNumber, replay.difficultyTier, 0));
+            }
+            // Engines keep their operation from one game to the next
+            replay.engine.setOperation(replay.operation);
+        }
+    }
+    
+    /**
+     * Applies one record; returns true when the session has ended.
+     */
+    private boolean apply(long session, Replay replay, byte type, MappedByteBuffer buffer, int offset) {
+        int small = buffer.get(offset + 9) & 0xFF;
+        int value = buffer.getInt(offset + 12);
+        if (type == GameEventLog.CARDS) {
+            readCards(replay, small, buffer.getLong(offset + 16));
+            return false;
+        }
+        if (replay.cardsRead < replay.handSize) {
+            throw new IllegalStateException("hand incomplete");
+        }
+        
+        GameEngine engine = replay.engine;
+        switch (type) {
+            case GameEventLog.TOGGLE:
+                engine.toggleCardAt(small);
+                return false;
+            case GameEventLog.OPERATION:
+                engine.setOperation(Operation.fromOrdinal(small));
+                return false;
+            case GameEventLog.CLEAR:
+                engine.clearSelection();
+                return false;
+            case GameEventLog.CHECK:
+                checks++;
+                int result = engine.calculateResult();
+                boolean correct = engine.checkAnswer();
+                if (result != value || correct != (small == 1)) {
+                    mismatch("session " + session + ": recorded result " + value + (small == 1 ? " (correct)" : "")
+                            + ", replayed " + result + (correct ? " (correct)" : ""));
+                }
+                return false;
+            case GameEventLog.SCORE:
+                scores++;
+                long timeSeconds = buffer.getLong(offset + 16);
+                int score = engine.calculateScore(timeSeconds, GameEventLog.modeName(small));
+                if (score != value) {
+                    mismatch("session " + session + ": recorded score " + value + ", replayed " + score);
+                }
+                return false;
+            case GameEventLog.END:
+                engine.endGame(small == 1, value);
+                return true;
+            default:
+                throw new IllegalStateException("unknown record type");
+        }
+    }
+    
+    private void mismatch(String description) {
+        mismatches++;
+        if (samples.size() < MAX_SAMPLES) {
+            samples.add(description);
+        }
+    }
+}
\ No newline at end of file
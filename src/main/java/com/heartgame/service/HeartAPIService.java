@@ -1,28 +1,24 @@
 package com.heartgame.service;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.heartgame.model.Card;
+import com.heartgame.model.Hand;
+import com.heartgame.util.Metrics;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.ArrayList;
+import java.net.URI;
+import java.net.http.HttpResponse;
 import java.util.List;
 import java.util.Random;
 
 /**
  * Service for interacting with the Heart API.
- * 
+ *
  * This class demonstrates INTEROPERABILITY by:
  * 1. Making HTTP requests to external API
  * 2. Parsing JSON responses
  * 3. Converting external data to internal model objects
- * 
+ *
  * It also demonstrates LOW COUPLING - it only knows about Card objects,
  * not about Users, UI, or game logic.
  */
@@ -30,105 +26,165 @@ public class HeartAPIService {
     
     private static final String API_BASE_URL = "https://www.random.org/playing-cards/";
     private static final Random random = new Random();
+    private static final ThreadLocal<TargetSolver> SOLVER = ThreadLocal.withInitial(TargetSolver::new);
+    
+    private static final Metrics.Timer FETCH_TIMER = Metrics.timer("api.fetch");
+    private static final Metrics.Timer PARSE_TIMER = Metrics.timer("api.parse");
+    private static final Metrics.Timer TARGET_TIMER = Metrics.timer("api.target");
+    private static final Metrics.Counter FETCH_ERRORS = Metrics.counter("api.fetch.errors");
+    private static final Metrics.Counter PARSE_ERRORS = Metrics.counter("api.parse.errors");
+    private static final Metrics.Counter LOCAL_DEALS = Metrics.counter("api.local.deals");
+    
+    private final String apiBaseUrl;
+    private final CardTransport transport;
+    private volatile TargetIndex targetIndex;
+    private volatile boolean fallbackEnabled = true;
+    private volatile boolean dealLocally;
+    
+    public HeartAPIService() {
+        this(API_BASE_URL);
+    }
+    
+    /**
+     * Creates a service against another deployment of the API, e.g. a local stub.
+     */
+    public HeartAPIService(String apiBaseUrl) {
+        this(apiBaseUrl, CardTransport.withDefaults());
+    }
+    
+    public HeartAPIService(String apiBaseUrl, CardTransport transport) {
+        this.apiBaseUrl = apiBaseUrl;
+        this.transport = transport;
+    }
     
     /**
      * Fetches cards from the Heart API.
-     * 
+     *
+     * Calls go through the pooled CardTransport with its retries and circuit
+     * breaker. If the API cannot deliver, cards are dealt locally instead.
+     *
      * @param numberOfCards Number of cards to fetch
      * @return List of Card objects
-     * @throws IOException if API call fails
+     * @throws IOException if API call fails and local dealing is disabled
      */
     public List<Card> fetchCards(int numberOfCards) throws IOException {
-        // Build API URL with parameters
-        String urlString = API_BASE_URL + "?number=" + numberOfCards + "&format=json";
-        
-        // Make HTTP GET request (Interoperability - HTTP Communication)
-        URL url = new URL(urlString);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setConnectTimeout(5000);
-        connection.setReadTimeout(5000);
+        if (dealLocally) {
+            return generateFallbackCards(numberOfCards);
+        }
         
-        int responseCode = connection.getResponseCode();
+        // Build API URL with parameters
+        URI uri = URI.create(apiBaseUrl + "?number=" + numberOfCards + "&format=json");
         
-        if (responseCode == HttpURLConnection.HTTP_OK) {
-            // Read response
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(connection.getInputStream())
-            );
-            StringBuilder response = new StringBuilder();
-            String line;
-            
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
+        byte[] response;
+        long start = FETCH_TIMER.start();
+        try {
+            // Make HTTP GET request (Interoperability - HTTP Communication).
+            // The whole body is read inside the transport deadline, so a
+            // server that stalls after the headers times out like any other.
+            response = transport.get(uri, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            FETCH_ERRORS.increment();
+            if (!fallbackEnabled) {
+                throw e;
             }
-            reader.close();
-            
-            // Parse JSON response (Interoperability - JSON Parsing)
-            return parseCardsFromJson(response.toString());
-        } else {
-            throw new IOException("API request failed with response code: " + responseCode);
+            System.err.println("Error fetching cards, dealing locally: " + e.getMessage());
+            return generateFallbackCards(numberOfCards);
+        } finally {
+            FETCH_TIMER.stop(start);
         }
-    }
-    
-    /**
-     * Parses JSON response from API into Card objects.
-     * Demonstrates INTEROPERABILITY through JSON parsing.
-     */
-    private List<Card> parseCardsFromJson(String jsonString) {
-        List<Card> cards = new ArrayList<>();
         
+        // Parse JSON response (Interoperability - JSON Parsing)
+        start = PARSE_TIMER.start();
         try {
-            JsonObject jsonObject = JsonParser.parseString(jsonString).getAsJsonObject();
-            JsonArray cardsArray = jsonObject.getAsJsonArray("cards");
-            
-            for (JsonElement element : cardsArray) {
-                JsonObject cardJson = element.getAsJsonObject();
-                String suit = cardJson.get("suit").getAsString();
-                String rank = cardJson.get("rank").getAsString();
-                
-                cards.add(new Card(suit, rank));
-            }
-        } catch (Exception e) {
+            return CardStreamParser.parse(new ByteArrayInputStream(response), numberOfCards);
+        } catch (IOException | RuntimeException e) {
+            PARSE_ERRORS.increment();
             System.err.println("Error parsing JSON: " + e.getMessage());
             // Fallback to generating random cards locally
-            cards = generateFallbackCards(5);
+            return generateFallbackCards(numberOfCards);
+        } finally {
+            PARSE_TIMER.stop(start);
         }
-        
-        return cards;
+    }
+    
+    /**
+     * Whether fetchCards deals locally when the API fails (the default).
+     */
+    public void setFallbackEnabled(boolean fallbackEnabled) {
+        this.fallbackEnabled = fallbackEnabled;
+    }
+    
+    /**
+     * Deals every hand locally without calling the API, e.g. for simulations
+     * and offline play.
+     */
+    public void setDealLocally(boolean dealLocally) {
+        this.dealLocally = dealLocally;
+    }
+    
+    public CardTransport getTransport() {
+        return transport;
     }
     
     /**
      * Generates a target number for the puzzle based on the cards.
+     * The target is always reachable with a single operator over two or more
+     * of the cards (see TargetSolver).
      */
     public int generateTargetNumber(List<Card> cards) {
         if (cards.isEmpty()) {
             return 10;
         }
         
-        // Generate a target that's achievable with the given cards
-        int min = cards.stream().mapToInt(Card::getValue).min().orElse(1);
-        int max = cards.stream().mapToInt(Card::getValue).sum();
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (int i = 0; i < cards.size(); i++) {
+            int value = cards.get(i).getValue();
+            min = Math.min(min, value);
+            max += value;
+        }
+        int unchecked = min + random.nextInt(Math.max(1, max - min));
+        
+        if (cards.size() < 2 || cards.size() > TargetSolver.MAX_CARDS) {
+            return unchecked;
+        }
         
-        // Target should be between min and max
-        return min + random.nextInt(Math.max(1, max - min));
+        // Only emit targets the cards can actually reach, preferring the
+        // familiar window between the smallest card and the sum of the cards
+        long start = TARGET_TIMER.start();
+        TargetIndex index = targetIndex;
+        int target;
+        if (index != null && index.covers(cards)) {
+            target = index.randomTarget(cards, random, min, max, Integer.MIN_VALUE);
+            if (target == Integer.MIN_VALUE) {
+                target = index.randomTarget(cards, random, 1, Integer.MAX_VALUE, unchecked);
+            }
+        } else {
+            ReachableTargets reachable = SOLVER.get().solve(cards);
+            target = reachable.randomTarget(random, min, max, Integer.MIN_VALUE);
+            if (target == Integer.MIN_VALUE) {
+                target = reachable.randomTarget(random, 1, Integer.MAX_VALUE, unchecked);
+            }
+        }
+        TARGET_TIMER.stop(start);
+        return target;
+    }
+    
+    /**
+     * Uses a precomputed target index for hands it covers instead of solving
+     * each hand on the deal path. Pass null to go back to solving.
+     */
+    public void setTargetIndex(TargetIndex targetIndex) {
+        this.targetIndex = targetIndex;
     }
     
     /**
      * Fallback method to generate cards locally if API fails.
      * Ensures the game can still function (robustness).
      */
-    private List<Card> generateFallbackCards(int count) {
-        List<Card> cards = new ArrayList<>();
-        String[] suits = {"hearts", "diamonds", "clubs", "spades"};
-        String[] ranks = {"A", "2", "3", "4", "5", "6", "7", "8", "9", "10", "J", "Q", "K"};
-        
-        for (int i = 0; i < count; i++) {
-            String suit = suits[random.nextInt(suits.length)];
-            String rank = ranks[random.nextInt(ranks.length)];
-            cards.add(new Card(suit, rank));
-        }
-        
-        return cards;
+    List<Card> generateFallbackCards(int count) {
+        LOCAL_DEALS.increment();
+        // Deal from a full deck so a hand never holds the same card twice
+        return Hand.deal(random, count);
     }
 }
\ No newline at end of file
@@ -0,0 +1,350 @@
+package com.heartgame.service;
+
+import com.heartgame.model.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incrementally maintained leaderboards.
+ *
+ * One ordered index per metric keeps every user sorted best-first, ties broken
+ * by username. The indexes are order-statistic treaps, so applying a user's
+ * new stats, finding a user's rank and fetching the n-th entry are all
+ * O(log n), and a page of k entries is O(k log n). No query ever scans or
+ * sorts the whole population.
+ */
+public class Leaderboard {
+    
+    public enum Metric {
+        BEST_SCORE {
+            @Override
+            long key(User user) {
+                return user.getBestScore();
+            }
+        },
+        BEST_STREAK {
+            @Override
+            long key(User user) {
+                return user.getBestStreak();
+            }
+        },
+        WIN_RATE {
+            // Non-negative doubles order the same as their raw bits
+            @Override
+            long key(User user) {
+                return Double.doubleToLongBits(user.getWinRate());
+            }
+            
+            @Override
+            double value(long key) {
+                return Double.longBitsToDouble(key);
+            }
+        },
+        GAMES_PLAYED {
+            @Override
+            long key(User user) {
+                return user.getTotalGamesPlayed();
+            }
+        };
+        
+        abstract long key(User user);
+        
+        double value(long key) {
+            return key;
+        }
+    }
+    
+    /**
+     * One row of a leaderboard page.
+     */
+    public static class Entry {
+        private final int rank;
+        private final String username;
+        private final double value;
+        
+        Entry(int rank, String username, double value) {
+            this.rank = rank;
+            this.username = username;
+            this.value = value;
+        }
+        
+        /** 1-based position on the board. */
+        public int getRank() { return rank; }
+        public String getUsername() { return username; }
+        public double getValue() { return value; }
+        
+        @Override
+        public String toString() {
+            return rank + ". " + username + " (" + value + ")";
+        }
+    }
+    
+    private static final Metric[] METRICS = Metric.values();
+    
+    private final RankedIndex[] indexes = new RankedIndex[METRICS.length];
+    private final Map<String, long[]> keysByUser = new ConcurrentHashMap<>();
+    
+    public Leaderboard() {
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = new RankedIndex();
+        }
+    }
+    
+    /**
+     * Adds the user or moves them to their new positions. Only boards whose
+     * key actually changed are touched.
+     */
+    public void update(User user) {
+        // Reading and applying under the user's lock keeps a stale update
+        // from overtaking a newer one for the same user
+        synchronized (user) {
+            String username = user.getUsername();
+            long[] fresh = new long[METRICS.length];
+            for (Metric metric : METRICS) {
+                fresh[metric.ordinal()] = metric.key(user);
+            }
+            
+            long[] previous = keysByUser.get(username);
+            for (int i = 0; i < METRICS.length; i++) {
+                if (previous == null) {
+                    indexes[i].insert(fresh[i], username);
+                } else if (previous[i] != fresh[i]) {
+                    indexes[i].move(previous[i], fresh[i], username);
+                }
+            }
+            // Published last, so rankOf never looks up keys the boards lack yet
+            keysByUser.put(username, fresh);
+        }
+    }
+    
+    public int size() {
+        return keysByUser.size();
+    }
+    
+    /**
+     * The best {@code k} users on a board.
+     */
+    public List<Entry> top(Metric metric, int k) {
+        return page(metric, 0, k);
+    }
+    
+    /**
+     * 1-based rank of the user on a board, or -1 if the user is unknown or
+     * is being moved on that board at this instant.
+     */
+    public int rankOf(Metric metric, String username) {
+        long[] keys = keysByUser.get(username);
+        while (keys != null) {
+            int rank = indexes[metric.ordinal()].rankOf(keys[metric.ordinal()], username);
+            if (rank >= 0) {
+                return rank + 1;
+            }
+            // Missed: the board already holds a newer key. Retry only if it
+            // has been published, so this never waits on an update
+            long[] latest = keysByUser.get(username);
+            if (latest == keys) {
+                return -1;
+            }
+            keys = latest;
+        }
+        return -1;
+    }
+    
+    /**
+     * The user's entry with up to {@code radius} neighbours on each side.
+     */
+    public List<Entry> around(Metric metric, String username, int radius) {
+        int rank = rankOf(metric, username);
+        if (rank <= 0) {
+            return Collections.emptyList();
+        }
+        int from = Math.max(0, rank - 1 - radius);
+        return page(metric, from, rank + radius - from);
+    }
+    
+    /**
+     * Up to {@code count} entries starting at 0-based position {@code from}.
+     */
+    public List<Entry> page(Metric metric, int from, int count) {
+        return indexes[metric.ordinal()].page(metric, from, count);
+    }
+    
+    /**
+     * Order-statistic treap ordered by key descending, then username.
+     */
+    private static final class RankedIndex {
+        
+        private static final class Node {
+            final long key;
+            final String name;
+            final int priority;
+            int size = 1;
+            Node left;
+            Node right;
+            
+            Node(long key, String name, int priority) {
+                this.key = key;
+                this.name = name;
+                this.priority = priority;
+            }
+        }
+        
+        private Node root;
+        private int seed = 0x2545F491;
+        
+        synchronized void insert(long key, String name) {
+            root = insert(root, new Node(key, name, nextPriority()));
+        }
+        
+        synchronized void move(long oldKey, long newKey, String name) {
+            root = remove(root, oldKey, name);
+            root = insert(root, new Node(newKey, name, nextPriority()));
+        }
+        
+        synchronized int rankOf(long key, String name) {
+            int rank = 0;
+            Node node = root;
+            while (node != null) {
+                int cmp = compare(key, name, node);
+                if (cmp < 0) {
+                    node = node.left;
+                } else {
+                    rank += size(node.left) + (cmp > 0 ? 1 : 0);
+                    if (cmp == 0) {
+                        return rank;
+                    }
+                    node = node.right;
+                }
+            }
+            return -1;
+        }
+        
+        synchronized List<Entry> page(Metric metric, int from, int count) {
+            int to = Math.min(size(root), from + Math.max(0, count));
+            List<Entry> entries = new ArrayList<>(Math.max(0, to - from));
+            for (int position = from; position < to; position++) {
+                Node node = select(position);
+                entries.add(new Entry(position + 1, node.name, metric.value(node.key)));
+            }
+            return entries;
+        }
+        
+        private Node select(int position) {
+            Node node = root;
+            while (true) {
+                int leftSize = size(node.left);
+                if (position < leftSize) {
+                    node = node.left;
+                } else if (position == leftSize) {
+                    return node;
+                } else {
+                    position -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+        
+        private static Node insert(Node node, Node fresh) {
+            if (node == null) {
+                return fresh;
+            }
+            if (fresh.priority > node.priority) {
+                Node[] halves = split(node, fresh.key, fresh.name);
+                fresh.left = halves[0];
+                fresh.right = halves[1];
+                update(fresh);
+                return fresh;
+            }
+            if (compare(fresh.key, fresh.name, node) < 0) {
+                node.left = insert(node.left, fresh);
+            } else {
+                node.right = insert(node.right, fresh);
+            }
+            update(node);
+            return node;
+        }
+        
+        private static Node remove(Node node, long key, String name) {
+            if (node == null) {
+                return null;
+            }
+            int cmp = compare(key, name, node);
+            if (cmp == 0) {
+                return merge(node.left, node.right);
+            }
+            if (cmp < 0) {
+                node.left = remove(node.left, key, name);
+            } else {
+                node.right = remove(node.right, key, name);
+            }
+            update(node);
+            return node;
+        }
+        
+        /**
+         * Splits into nodes ordered before (key, name) and the rest.
+         */
+        private static Node[] split(Node node, long key, String name) {
+            if (node == null) {
+                return new Node[2];
+            }
+            if (compare(key, name, node) > 0) {
+                Node[] halves = split(node.right, key, name);
+                node.right = halves[0];
+                update(node);
+                halves[0] = node;
+                return halves;
+            }
+            Node[] halves = split(node.left, key, name);
+            node.left = halves[1];
+            update(node);
+            halves[1] = node;
+            return halves;
+        }
+        
+        private static Node merge(Node left, Node right) {
+            if (left == null) {
+                return right;
+            }
+            if (right == null) {
+                return left;
+            }
+            if (left.priority > right.priority) {
+                left.right = merge(left.right, right);
+                update(left);
+                return left;
+            }
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+        
+        // Higher keys rank first; equal keys fall back to username order
+        private static int compare(long key, String name, Node node) {
+            if (key != node.key) {
+                return key > node.key ? -1 : 1;
+            }
+            return name.compareTo(node.name);
+        }
+        
+        private static int size(Node node) {
+            return node == null ? 0 : node.size;
+        }
+        
+        private static void update(Node node) {
+            node.size = 1 + size(node.left) + size(node.right);
+        }
+        
+        // xorshift: priorities only need to be well spread, not secure
+        private int nextPriority() {
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            return seed;
+        }
+    }
+}
\ No newline at end of file
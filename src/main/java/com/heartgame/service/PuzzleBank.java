@@ -0,0 +1,113 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Hand;
+import com.heartgame.model.Puzzle;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped bank of pre-generated puzzles, written offline by
+ * PuzzleBankBuilder and grouped by difficulty tier.
+ *
+ * File layout (big-endian):
+ *   header   magic, version, hand size, tier count, puzzle count (32 bytes)
+ *   tiers    per tier: first puzzle, puzzle count (8 bytes each)
+ *   puzzles  per puzzle: card codes (one byte each), target, solution count
+ *            (unsigned shorts), so 9 bytes for a five-card hand
+ *
+ * Any puzzle is read by tier and index with a single offset computation.
+ */
+public class PuzzleBank {
+    
+    public static final String DEFAULT_FILE = "puzzles.bank";
+    
+    /** Number of difficulty tiers in a bank. */
+    public static final int TIERS = 5;
+    
+    static final int MAGIC = 0x48475042; // "HGPB"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int TIER_BYTES = 8;
+    static final int MAX_HAND_SIZE = TargetSolver.MAX_CARDS;
+    
+    private final MappedByteBuffer buffer;
+    private final int handSize;
+    private final int tierCount;
+    private final int puzzleCount;
+    private final int recordBytes;
+    private final int puzzlesOffset;
+    
+    private PuzzleBank(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a puzzle bank file (or unsupported version)");
+        }
+        this.handSize = buffer.getInt(8);
+        this.tierCount = buffer.getInt(12);
+        this.puzzleCount = buffer.getInt(16);
+        this.recordBytes = recordBytes(handSize);
+        this.puzzlesOffset = HEADER_BYTES + tierCount * TIER_BYTES;
+        if (handSize < 2 || handSize > MAX_HAND_SIZE || tierCount < 1 || puzzleCount < 0
+                || (long) puzzlesOffset + (long) puzzleCount * recordBytes != buffer.capacity()) {
+            throw new IOException("Corrupt puzzle bank header");
+        }
+    }
+    
+    /**
+     * Maps a bank file written by PuzzleBankBuilder.
+     */
+    public static PuzzleBank open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new PuzzleBank(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+    
+    public int getHandSize() {
+        return handSize;
+    }
+    
+    public int getTierCount() {
+        return tierCount;
+    }
+    
+    public int size() {
+        return puzzleCount;
+    }
+    
+    public int size(int tier) {
+        return buffer.getInt(tierOffset(tier) + 4);
+    }
+    
+    /**
+     * The puzzle at an index within a tier.
+     */
+    public Puzzle get(int tier, int index) {
+        if (index < 0 || index >= size(tier)) {
+            throw new IndexOutOfBoundsException("No puzzle " + index + " in tier " + tier);
+        }
+        int offset = puzzlesOffset + (buffer.getInt(tierOffset(tier)) + index) * recordBytes;
+        byte[] codes = new byte[handSize];
+        for (int i = 0; i < handSize; i++) {
+            codes[i] = buffer.get(offset + i);
+        }
+        int target = buffer.getShort(offset + handSize) & 0xFFFF;
+        int solutions = buffer.getShort(offset + handSize + 2) & 0xFFFF;
+        return new Puzzle(Hand.ofCodes(codes, handSize), target, tier, solutions);
+    }
+    
+    private int tierOffset(int tier) {
+        if (tier < 0 || tier >= tierCount) {
+            throw new IllegalArgumentException("No difficulty tier " + tier);
+        }
+        return HEADER_BYTES + tier * TIER_BYTES;
+    }
+    
+    static int recordBytes(int handSize) {
+        return handSize + 4;
+    }
+}
\ No newline at end of file
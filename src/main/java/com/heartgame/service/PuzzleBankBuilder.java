@@ -0,0 +1,153 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Hand;
+import com.heartgame.util.FileManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Offline generator for the puzzle bank read by PuzzleBank.
+ *
+ * Deals the requested number of hands on a parallel stream, picks a
+ * reachable target for each from the same window the game uses (smallest
+ * card up to the sum of the cards) and counts its distinct solutions with
+ * TargetSolver. Puzzles are then ranked from hardest to easiest, fewest
+ * solutions first and larger targets first among equals, and cut into
+ * PuzzleBank.TIERS tiers of about the same size. A tier boundary never
+ * separates two puzzles of the same rank. Hands whose window holds no
+ * reachable target are dropped.
+ *
+ * Every hand is dealt from its own seed, so a bank depends only on the
+ * seed and not on how the stream was split.
+ *
+ * Usage: PuzzleBankBuilder [output-file] [hand-size] [hands] [seed]
+ */
+public class PuzzleBankBuilder {
+    
+    private static final ThreadLocal<TargetSolver> SOLVER = ThreadLocal.withInitial(TargetSolver::new);
+    
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get(args.length > 0 ? args[0] : PuzzleBank.DEFAULT_FILE);
+        int handSize = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int hands = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+        
+        long start = System.nanoTime();
+        build(output, handSize, hands, seed);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        
+        PuzzleBank bank = PuzzleBank.open(output);
+        System.out.println("Wrote " + bank.size() + " puzzles to " + output + " in " + millis + " ms");
+        for (int tier = 0; tier < bank.getTierCount(); tier++) {
+            System.out.println("  tier " + tier + ": " + bank.size(tier) + " puzzles");
+        }
+    }
+    
+    /**
+     * Deals and ranks the given number of hands and writes the bank file.
+     */
+    public static void build(Path output, int handSize, int hands, long seed) throws IOException {
+        if (handSize < 2 || handSize > PuzzleBank.MAX_HAND_SIZE) {
+            throw new IllegalArgumentException("Unsupported hand size: " + handSize);
+        }
+        int recordBytes = PuzzleBank.recordBytes(handSize);
+        int headerBytes = PuzzleBank.HEADER_BYTES + PuzzleBank.TIERS * PuzzleBank.TIER_BYTES;
+        if (hands < 0 || (long) hands * recordBytes > Integer.MAX_VALUE - headerBytes) {
+            throw new IllegalArgumentException("Unsupported number of hands: " + hands);
+        }
+        
+        // Each slot is written by exactly one stream element, so no locking
+        byte[] records = new byte[hands * recordBytes];
+        long[] ranking = new long[hands];
+        IntStream.range(0, hands).parallel().forEach(i -> {
+            Random random = new Random(new SplittableRandom(seed + i).nextLong());
+            ranking[i] = deal(random, handSize, records, i * recordBytes) << 32 | i;
+        });
+        
+        // Hardest first; dropped hands sort ahead of everything
+        Arrays.parallelSort(ranking);
+        int dropped = 0;
+        while (dropped < hands && ranking[dropped] < 0) {
+            dropped++;
+        }
+        int count = hands - dropped;
+        
+        byte[] tierOf = new byte[hands];
+        Arrays.fill(tierOf, (byte) -1);
+        int[] tierSizes = new int[PuzzleBank.TIERS];
+        int rank = dropped;
+        for (int tier = PuzzleBank.TIERS - 1; tier >= 0; tier--) {
+            int end = Math.max(rank, dropped + (int) ((long) count * (PuzzleBank.TIERS - tier) / PuzzleBank.TIERS));
+            while (end > dropped && end < hands && (ranking[end] >> 32) == (ranking[end - 1] >> 32)) {
+                end++;
+            }
+            for (; rank < end; rank++) {
+                tierOf[(int) ranking[rank]] = (byte) tier;
+                tierSizes[tier]++;
+            }
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(headerBytes + count * recordBytes);
+        buffer.putInt(PuzzleBank.MAGIC);
+        buffer.putInt(PuzzleBank.VERSION);
+        buffer.putInt(handSize);
+        buffer.putInt(PuzzleBank.TIERS);
+        buffer.putInt(count);
+        buffer.position(PuzzleBank.HEADER_BYTES);
+        int[] next = new int[PuzzleBank.TIERS];
+        int first = 0;
+        for (int tier = 0; tier < PuzzleBank.TIERS; tier++) {
+            buffer.putInt(first);
+            buffer.putInt(tierSizes[tier]);
+            next[tier] = headerBytes + first * recordBytes;
+            first += tierSizes[tier];
+        }
+        
+        // Within a tier puzzles keep their dealing order, so consecutive
+        // puzzles are unrelated
+        byte[] bank = buffer.array();
+        for (int i = 0; i < hands; i++) {
+            if (tierOf[i] >= 0) {
+                System.arraycopy(records, i * recordBytes, bank, next[tierOf[i]], recordBytes);
+                next[tierOf[i]] += recordBytes;
+            }
+        }
+        
+        FileManager.writeFileAtomically(output, bank);
+    }
+    
+    /**
+     * Deals one puzzle into the record at the offset and returns its rank
+     * key, lower for harder puzzles, or -1 if the hand has no target.
+     */
+    private static long deal(Random random, int handSize, byte[] records, int offset) {
+        Hand hand = Hand.deal(random, handSize);
+        int min = Integer.MAX_VALUE;
+        int sum = 0;
+        for (int i = 0; i < handSize; i++) {
+            min = Math.min(min, hand.valueAt(i));
+            sum += hand.valueAt(i);
+        }
+        
+        ReachableTargets targets = SOLVER.get().solve(hand);
+        int target = targets.randomTarget(random, min, sum, -1);
+        if (target < 1 || target > 0xFFFF) {
+            return -1;
+        }
+        int solutions = Math.min(targets.solutionCount(target), 0xFFFF);
+        
+        hand.copyCodes(records, offset);
+        records[offset + handSize] = (byte) (target >>> 8);
+        records[offset + handSize + 1] = (byte) target;
+        records[offset + handSize + 2] = (byte) (solutions >>> 8);
+        records[offset + handSize + 3] = (byte) solutions;
+        return (long) Math.min(solutions, 0x7FFF) << 16 | (0xFFFF - target);
+    }
+}
\ No newline at end of file
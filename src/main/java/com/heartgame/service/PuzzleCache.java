@@ -0,0 +1,67 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Puzzle;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves puzzles from a PuzzleBank by game mode and difficulty tier, so
+ * starting a game never deals or solves a hand.
+ *
+ * Every mode has its own cursor per tier, and taking a puzzle is one
+ * increment plus one read from the mapped bank. Modes start at different
+ * points of each tier, so switching modes does not replay the same
+ * puzzles. Cursors wrap around once a tier is used up.
+ *
+ * Thread-safe.
+ */
+public class PuzzleCache {
+    
+    private final PuzzleBank bank;
+    private final ConcurrentMap<String, AtomicInteger[]> cursors = new ConcurrentHashMap<>();
+    
+    public PuzzleCache(PuzzleBank bank) {
+        this.bank = bank;
+    }
+    
+    /**
+     * Cache over the bank file written by PuzzleBankBuilder.
+     */
+    public static PuzzleCache open(Path bankFile) throws IOException {
+        return new PuzzleCache(PuzzleBank.open(bankFile));
+    }
+    
+    public PuzzleBank getBank() {
+        return bank;
+    }
+    
+    public int getTierCount() {
+        return bank.getTierCount();
+    }
+    
+    /**
+     * The next puzzle of the tier for the game mode.
+     */
+    public Puzzle next(String gameMode, int tier) {
+        int size = bank.size(tier);
+        if (size == 0) {
+            throw new IllegalStateException("No puzzles in tier " + tier);
+        }
+        AtomicInteger[] modeCursors = cursors.computeIfAbsent(gameMode, this::startCursors);
+        return bank.get(tier, Math.floorMod(modeCursors[tier].getAndIncrement(), size));
+    }
+    
+    private AtomicInteger[] startCursors(String gameMode) {
+        AtomicInteger[] modeCursors = new AtomicInteger[bank.getTierCount()];
+        int start = gameMode.hashCode() * 0x9E3779B9;
+        for (int tier = 0; tier < modeCursors.length; tier++) {
+            int size = bank.size(tier);
+            modeCursors[tier] = new AtomicInteger(size == 0 ? 0 : Math.floorMod(start, size));
+        }
+        return modeCursors;
+    }
+}
\ No newline at end of file
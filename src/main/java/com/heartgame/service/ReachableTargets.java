@@ -0,0 +1,104 @@
+package com.heartgame.service;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Immutable set of results a hand can reach, with the number of distinct
+ * solutions (operator, card subset and leading card) that produce each one.
+ * Targets are kept sorted so membership is a binary search.
+ */
+public final class ReachableTargets {
+    
+    private final int[] targets;
+    private final int[] solutionCounts;
+    
+    private ReachableTargets(int[] targets, int[] solutionCounts) {
+        this.targets = targets;
+        this.solutionCounts = solutionCounts;
+    }
+    
+    /**
+     * Builds the set from raw solver results. Sorts {@code results} in place.
+     */
+    static ReachableTargets fromResults(int[] results, int count) {
+        Arrays.sort(results, 0, count);
+        
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || results[i] != results[i - 1]) {
+                distinct++;
+            }
+        }
+        
+        int[] targets = new int[distinct];
+        int[] counts = new int[distinct];
+        int slot = -1;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || results[i] != results[i - 1]) {
+                targets[++slot] = results[i];
+            }
+            counts[slot]++;
+        }
+        
+        return new ReachableTargets(targets, counts);
+    }
+    
+    public boolean contains(int target) {
+        return Arrays.binarySearch(targets, target) >= 0;
+    }
+    
+    /**
+     * Returns how many distinct solutions reach the target, or 0 if unreachable.
+     */
+    public int solutionCount(int target) {
+        int index = Arrays.binarySearch(targets, target);
+        return index >= 0 ? solutionCounts[index] : 0;
+    }
+    
+    public int size() {
+        return targets.length;
+    }
+    
+    public int targetAt(int index) {
+        return targets[index];
+    }
+    
+    public int solutionCountAt(int index) {
+        return solutionCounts[index];
+    }
+    
+    public boolean isEmpty() {
+        return targets.length == 0;
+    }
+    
+    /**
+     * Number of reachable targets in the range [min, max).
+     */
+    public int countInRange(int min, int max) {
+        return lowerBound(max) - lowerBound(min);
+    }
+    
+    /**
+     * Picks a reachable target uniformly from the range [min, max).
+     * Returns {@code fallback} if none of the reachable targets fall in it.
+     */
+    public int randomTarget(Random random, int min, int max, int fallback) {
+        int from = lowerBound(min);
+        int to = lowerBound(max);
+        if (from >= to) {
+            return fallback;
+        }
+        return targets[from + random.nextInt(to - from)];
+    }
+    
+    private int lowerBound(int value) {
+        int index = Arrays.binarySearch(targets, value);
+        return index >= 0 ? index : -index - 1;
+    }
+    
+    @Override
+    public String toString() {
+        return "ReachableTargets" + Arrays.toString(targets);
+    }
+}
\ No newline at end of file
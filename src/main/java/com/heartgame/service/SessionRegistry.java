@@ -0,0 +1,203 @@
+package com.heartgame.service;
+
+import com.heartgame.model.GameSession;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Live game sessions by session id, with idle-timeout eviction.
+ *
+ * Expiry runs on a hashed timer wheel: a ring of buckets advanced by a single
+ * reaper thread every tick, so scheduling and expiring a session are O(1) no
+ * matter how many are live. Touching a session only stamps its last-activity
+ * time; when its bucket comes round, an entry that saw activity is moved to
+ * a later bucket instead of being expired. An abandoned session is evicted
+ * within one tick after its idle timeout and handed to the expiry listener.
+ * The registry never touches the session itself: its owner ends it, e.g. as
+ * a loss, on the thread that owns it.
+ *
+ * Each session costs one fixed-size entry here, whatever its state.
+ */
+public class SessionRegistry {
+    
+    private static final class Entry {
+        final String sessionId;
+        final GameSession session;
+        volatile long lastTouchedNanos;
+        // Reaper thread only
+        long expiryTick;
+        Entry next;
+        
+        Entry(GameSession session, long now) {
+            this.sessionId = session.getSessionId();
+            this.session = session;
+            this.lastTouchedNanos = now;
+        }
+    }
+    
+    private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final Entry[] wheel;
+    private final long tickNanos;
+    private final long idleTimeoutNanos;
+    private final ScheduledExecutorService reaper;
+    private final LongAdder evicted = new LongAdder();
+    private volatile Consumer<GameSession> expiryListener;
+    
+    // Reaper thread only
+    private long currentTick;
+    
+    /**
+     * Registry with 512 buckets ticking every second.
+     */
+    public SessionRegistry(long idleTimeout, TimeUnit unit) {
+        this(idleTimeout, unit, 1, TimeUnit.SECONDS, 512);
+    }
+    
+    public SessionRegistry(long idleTimeout, TimeUnit unit, long tick, TimeUnit tickUnit, int wheelSize) {
+        if (idleTimeout <= 0 || tick <= 0 || wheelSize < 1) {
+            throw new IllegalArgumentException("Invalid timer wheel: timeout " + idleTimeout
+                    + ", tick " + tick + ", size " + wheelSize);
+        }
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.tickNanos = tickUnit.toNanos(tick);
+        this.wheel = new Entry[wheelSize];
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleAtFixedRate(this::tick, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Called on the reaper thread with each evicted session, which is no
+     * longer live by then. The listener must not block; it should hand the
+     * session to its owner to be ended.
+     */
+    public void setExpiryListener(Consumer<GameSession> expiryListener) {
+        this.expiryListener = expiryListener;
+    }
+    
+    /**
+     * Starts tracking a session.
+     */
+    public void register(GameSession session) {
+        Entry entry = new Entry(session, System.nanoTime());
+        if (sessions.putIfAbsent(entry.sessionId, entry) != null) {
+            throw new IllegalArgumentException("Session already registered: " + entry.sessionId);
+        }
+        pending.add(entry);
+    }
+    
+    /**
+     * Records activity on a session. Returns false if it is not live.
+     */
+    public boolean touch(String sessionId) {
+        Entry entry = sessions.get(sessionId);
+        if (entry == null) {
+            return false;
+        }
+        entry.lastTouchedNanos = System.nanoTime();
+        return true;
+    }
+    
+    /**
+     * Stops tracking a session that ended normally. Returns false if it was
+     * already evicted or never registered; the caller must not score it then.
+     */
+    public boolean complete(String sessionId) {
+        return sessions.remove(sessionId) != null;
+    }
+    
+    public GameSession get(String sessionId) {
+        Entry entry = sessions.get(sessionId);
+        return entry != null ? entry.session : null;
+    }
+    
+    /** Gauge: sessions currently live. */
+    public int getLiveSessions() {
+        return sessions.size();
+    }
+    
+    /** Gauge: sessions evicted for idleness since startup. */
+    public long getEvictedSessions() {
+        return evicted.sum();
+    }
+    
+    public void shutdown() {
+        reaper.shutdownNow();
+    }
+    
+    private void tick() {
+        try {
+            long now = System.nanoTime();
+            Entry added;
+            while ((added = pending.poll()) != null) {
+                schedule(added, added.lastTouchedNanos + idleTimeoutNanos, now);
+            }
+            
+            currentTick++;
+            int bucket = (int) (currentTick % wheel.length);
+            Entry entry = wheel[bucket];
+            wheel[bucket] = null;
+            
+            while (entry != null) {
+                Entry next = entry.next;
+                entry.next = null;
+                // Entries of sessions that completed normally are simply dropped
+                if (sessions.get(entry.sessionId) == entry) {
+                    advance(entry, bucket, now);
+                }
+                entry = next;
+            }
+        } catch (RuntimeException e) {
+            // Keep the wheel turning; a failure must not cancel the reaper
+            System.err.println("Error evicting sessions: " + e.getMessage());
+        }
+    }
+    
+    private void advance(Entry entry, int bucket, long now) {
+        if (entry.expiryTick > currentTick) {
+            // Not due until a later turn of the wheel
+            entry.next = wheel[bucket];
+            wheel[bucket] = entry;
+            return;
+        }
+        long deadline = entry.lastTouchedNanos + idleTimeoutNanos;
+        if (deadline - now > 0) {
+            schedule(entry, deadline, now);
+        } else {
+            expire(entry);
+        }
+    }
+    
+    private void schedule(Entry entry, long deadlineNanos, long now) {
+        long ticks = Math.max(1L, (deadlineNanos - now + tickNanos - 1) / tickNanos);
+        entry.expiryTick = currentTick + ticks;
+        int bucket = (int) (entry.expiryTick % wheel.length);
+        entry.next = wheel[bucket];
+        wheel[bucket] = entry;
+    }
+    
+    private void expire(Entry entry) {
+        // Removing the entry decides the race with complete()
+        if (!sessions.remove(entry.sessionId, entry)) {
+            return;
+        }
+        evicted.increment();
+        
+        Consumer<GameSession> listener = expiryListener;
+        if (listener != null) {
+            listener.accept(entry.session);
+        }
+    }
+}
\ No newline at end of file
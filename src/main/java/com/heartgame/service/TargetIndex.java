@@ -0,0 +1,224 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Card;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Memory-mapped lookup table from a hand to its reachable targets, written
+ * offline by TargetIndexBuilder.
+ *
+ * File layout (big-endian):
+ *   header   magic, version, hand size, hand count, entry count (32 bytes)
+ *   hands    per canonical hand: 128-bit bitset of reachable targets 0..127,
+ *            first entry, entry count (24 bytes each, ordered by rank)
+ *   entries  per reachable target: target, solution count (8 bytes each,
+ *            sorted by target within a hand)
+ *
+ * Lookups read the mapping directly, so they cost no heap beyond a per-thread
+ * scratch array. Membership of small targets is a single bit test; anything
+ * else is a binary search over the hand's entries.
+ *
+ * Since a correct answer always equals the session target, isReachable also
+ * serves as an independent cross-check for GameEngine.checkAnswer: a target
+ * the index rejects can never be answered correctly.
+ */
+public class TargetIndex {
+    
+    public static final String DEFAULT_FILE = "targets.idx";
+    
+    static final int MAGIC = 0x48475449; // "HGTI"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int HAND_BYTES = 24;
+    static final int ENTRY_BYTES = 8;
+    static final int WINDOW_BITS = 128;
+    static final int MIN_VALUE = 1;
+    static final int MAX_VALUE = 13;
+    static final int MAX_HAND_SIZE = TargetSolver.MAX_CARDS;
+    
+    private static final int VALUES = MAX_VALUE - MIN_VALUE + 1;
+    private static final int[][] BINOMIAL = binomials(VALUES + MAX_HAND_SIZE);
+    
+    private static final ThreadLocal<int[]> SCRATCH = ThreadLocal.withInitial(() -> new int[MAX_HAND_SIZE]);
+    
+    private final MappedByteBuffer buffer;
+    private final int handSize;
+    private final int handCount;
+    private final int entriesOffset;
+    
+    private TargetIndex(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a target index file (or unsupported version)");
+        }
+        this.handSize = buffer.getInt(8);
+        this.handCount = buffer.getInt(12);
+        if (handSize < 2 || handSize > MAX_HAND_SIZE || handCount != handCount(handSize)) {
+            throw new IOException("Corrupt target index header");
+        }
+        this.entriesOffset = HEADER_BYTES + handCount * HAND_BYTES;
+    }
+    
+    /**
+     * Maps an index file written by TargetIndexBuilder.
+     */
+    public static TargetIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new TargetIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+    
+    public int getHandSize() {
+        return handSize;
+    }
+    
+    /**
+     * Whether this index has an entry for the hand.
+     */
+    public boolean covers(List<Card> cards) {
+        return handRank(cards) >= 0;
+    }
+    
+    /**
+     * Whether the target can be reached with the cards.
+     * Throws IllegalArgumentException if the index does not cover the hand.
+     */
+    public boolean isReachable(List<Card> cards, int target) {
+        int hand = requireHand(cards);
+        if (target >= 0 && target < WINDOW_BITS) {
+            long bits = buffer.getLong(handOffset(hand) + (target < 64 ? 0 : 8));
+            return (bits & (1L << (target & 63))) != 0;
+        }
+        return findEntry(hand, target) >= 0;
+    }
+    
+    /**
+     * Number of distinct solutions for the target (0 if unreachable), the
+     * basis for answer hints.
+     */
+    public int solutionCount(List<Card> cards, int target) {
+        int hand = requireHand(cards);
+        int entry = findEntry(hand, target);
+        return entry >= 0 ? buffer.getInt(entryOffset(entry) + 4) : 0;
+    }
+    
+    /**
+     * Number of distinct targets the hand can reach.
+     */
+    public int reachableCount(List<Card> cards) {
+        return buffer.getInt(handOffset(requireHand(cards)) + 20);
+    }
+    
+    /**
+     * Picks a reachable target uniformly from [min, max), or returns
+     * {@code fallback} when none falls in the range.
+     */
+    public int randomTarget(List<Card> cards, Random random, int min, int max, int fallback) {
+        int hand = requireHand(cards);
+        int from = lowerBound(hand, min);
+        int to = lowerBound(hand, max);
+        if (from >= to) {
+            return fallback;
+        }
+        return buffer.getInt(entryOffset(from + random.nextInt(to - from)));
+    }
+    
+    private int requireHand(List<Card> cards) {
+        int hand = handRank(cards);
+        if (hand < 0) {
+            throw new IllegalArgumentException("Hand not covered by target index: " + cards);
+        }
+        return hand;
+    }
+    
+    private int handRank(List<Card> cards) {
+        if (cards.size() != handSize) {
+            return -1;
+        }
+        int[] values = SCRATCH.get();
+        for (int i = 0; i < handSize; i++) {
+            int value = cards.get(i).getValue();
+            if (value < MIN_VALUE || value > MAX_VALUE) {
+                return -1;
+            }
+            // Insertion sort: hands are tiny and this keeps lookups allocation-free
+            int j = i;
+            while (j > 0 && values[j - 1] > value) {
+                values[j] = values[j - 1];
+                j--;
+            }
+            values[j] = value;
+        }
+        return rank(values, handSize);
+    }
+    
+    private int findEntry(int hand, int target) {
+        int entry = lowerBound(hand, target);
+        int end = buffer.getInt(handOffset(hand) + 16) + buffer.getInt(handOffset(hand) + 20);
+        return entry < end && buffer.getInt(entryOffset(entry)) == target ? entry : -1;
+    }
+    
+    /**
+     * Global index of the hand's first entry whose target is >= value.
+     */
+    private int lowerBound(int hand, int value) {
+        int low = buffer.getInt(handOffset(hand) + 16);
+        int high = low + buffer.getInt(handOffset(hand) + 20);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getInt(entryOffset(mid)) < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private static int handOffset(int hand) {
+        return HEADER_BYTES + hand * HAND_BYTES;
+    }
+    
+    private int entryOffset(int entry) {
+        return entriesOffset + entry * ENTRY_BYTES;
+    }
+    
+    /**
+     * Number of canonical hands (value multisets) of the given size.
+     */
+    static int handCount(int handSize) {
+        return BINOMIAL[VALUES + handSize - 1][handSize];
+    }
+    
+    /**
+     * Ranks a sorted value multiset with the combinatorial number system:
+     * mapping v[i] to (v[i] - MIN_VALUE + i) gives a strictly increasing
+     * sequence whose colex rank is the sum of C(c[i], i + 1).
+     */
+    static int rank(int[] sortedValues, int n) {
+        int rank = 0;
+        for (int i = 0; i < n; i++) {
+            rank += BINOMIAL[sortedValues[i] - MIN_VALUE + i][i + 1];
+        }
+        return rank;
+    }
+    
+    private static int[][] binomials(int size) {
+        int[][] table = new int[size + 1][size + 1];
+        for (int n = 0; n <= size; n++) {
+            table[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                table[n][k] = table[n - 1][k - 1] + table[n - 1][k];
+            }
+        }
+        return table;
+    }
+}
\ No newline at end of file
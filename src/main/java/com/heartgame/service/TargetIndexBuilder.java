@@ -0,0 +1,112 @@
+package com.heartgame.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Offline builder for the hand to reachable-targets index read by TargetIndex.
+ *
+ * Suits never affect a result, so the index is keyed by the sorted multiset of
+ * card values. With 13 values there are C(13 + k - 1, k) such hands: 6188 for
+ * five cards, 50388 for seven.
+ *
+ * Usage: TargetIndexBuilder [output-file] [hand-size]
+ */
+public class TargetIndexBuilder {
+    
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get(args.length > 0 ? args[0] : TargetIndex.DEFAULT_FILE);
+        int handSize = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        
+        long start = System.nanoTime();
+        build(output, handSize);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Wrote " + TargetIndex.handCount(handSize) + " hands to " + output + " in " + millis + " ms");
+    }
+    
+    /**
+     * Solves every canonical hand of the given size and writes the index file.
+     */
+    public static void build(Path output, int handSize) throws IOException {
+        if (handSize < 2 || handSize > TargetIndex.MAX_HAND_SIZE) {
+            throw new IllegalArgumentException("Unsupported hand size: " + handSize);
+        }
+        
+        int handCount = TargetIndex.handCount(handSize);
+        ReachableTargets[] solved = new ReachableTargets[handCount];
+        TargetSolver solver = new TargetSolver();
+        int[] values = new int[handSize];
+        int entryCount = 0;
+        
+        // Walk every non-decreasing value sequence, i.e. every canonical hand
+        for (int i = 0; i < handSize; i++) {
+            values[i] = TargetIndex.MIN_VALUE;
+        }
+        while (true) {
+            ReachableTargets targets = solver.solve(values, handSize);
+            solved[TargetIndex.rank(values, handSize)] = targets;
+            entryCount += targets.size();
+            
+            int pos = handSize - 1;
+            while (pos >= 0 && values[pos] == TargetIndex.MAX_VALUE) {
+                pos--;
+            }
+            if (pos < 0) {
+                break;
+            }
+            values[pos]++;
+            for (int i = pos + 1; i < handSize; i++) {
+                values[i] = values[pos];
+            }
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(TargetIndex.HEADER_BYTES
+                + handCount * TargetIndex.HAND_BYTES
+                + entryCount * TargetIndex.ENTRY_BYTES);
+        
+        buffer.putInt(TargetIndex.MAGIC);
+        buffer.putInt(TargetIndex.VERSION);
+        buffer.putInt(handSize);
+        buffer.putInt(handCount);
+        buffer.putInt(entryCount);
+        buffer.position(TargetIndex.HEADER_BYTES);
+        
+        int entryStart = 0;
+        for (ReachableTargets targets : solved) {
+            long low = 0;
+            long high = 0;
+            for (int i = 0; i < targets.size(); i++) {
+                int target = targets.targetAt(i);
+                if (target >= 0 && target < 64) {
+                    low |= 1L << target;
+                } else if (target >= 64 && target < TargetIndex.WINDOW_BITS) {
+                    high |= 1L << (target - 64);
+                }
+            }
+            buffer.putLong(low);
+            buffer.putLong(high);
+            buffer.putInt(entryStart);
+            buffer.putInt(targets.size());
+            entryStart += targets.size();
+        }
+        
+        for (ReachableTargets targets : solved) {
+            for (int i = 0; i < targets.size(); i++) {
+                buffer.putInt(targets.targetAt(i));
+                buffer.putInt(targets.solutionCountAt(i));
+            }
+        }
+        
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
\ No newline at end of file
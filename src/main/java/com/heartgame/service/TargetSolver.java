@@ -0,0 +1,113 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Card;
+import com.heartgame.model.Hand;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Enumerates every result a hand can produce under the game's rules.
+ *
+ * A result is reachable when some ordered selection of two or more cards,
+ * folded left to right with one operator (as GameEngine.calculateResult does),
+ * evaluates to it. Because all card values are non-negative the fold collapses
+ * to a handful of subset aggregates:
+ *   +  sum of the subset (order never matters)
+ *   *  product of the subset (int overflow wraps the same way in any order)
+ *   -  first card minus the sum of the others
+ *   /  first card divided by the product of the other non-zero cards
+ *      (truncating division composes, and division by zero is skipped)
+ * so the solver only needs one pass over the subset bitmasks, memoizing each
+ * aggregate from the subset without its lowest card.
+ *
+ * Instances keep their scratch tables and are not thread-safe.
+ */
+public class TargetSolver {
+    
+    /** Largest hand the solver accepts (4096 subsets). */
+    public static final int MAX_CARDS = 12;
+    
+    private final int[] sums = new int[1 << MAX_CARDS];
+    private final int[] products = new int[1 << MAX_CARDS];
+    private final long[] divisors = new long[1 << MAX_CARDS];
+    private final int[] values = new int[MAX_CARDS];
+    private int[] results = new int[256];
+    
+    /**
+     * Solves the hand formed by the given cards.
+     */
+    public ReachableTargets solve(List<Card> cards) {
+        int n = cards.size();
+        checkSize(n);
+        if (cards instanceof Hand) {
+            Hand hand = (Hand) cards;
+            for (int i = 0; i < n; i++) {
+                values[i] = hand.valueAt(i);
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                values[i] = cards.get(i).getValue();
+            }
+        }
+        return solveLoaded(n);
+    }
+    
+    /**
+     * Solves the hand formed by the first {@code n} card values.
+     */
+    public ReachableTargets solve(int[] cardValues, int n) {
+        checkSize(n);
+        System.arraycopy(cardValues, 0, values, 0, n);
+        return solveLoaded(n);
+    }
+    
+    private static void checkSize(int n) {
+        if (n > MAX_CARDS) {
+            throw new IllegalArgumentException("Hand too large for solver: " + n + " cards");
+        }
+    }
+    
+    private ReachableTargets solveLoaded(int n) {
+        int count = 0;
+        int subsets = 1 << n;
+        
+        sums[0] = 0;
+        products[0] = 1;
+        divisors[0] = 1;
+        
+        for (int mask = 1; mask < subsets; mask++) {
+            int low = Integer.numberOfTrailingZeros(mask);
+            int rest = mask & (mask - 1);
+            int value = values[low];
+            
+            sums[mask] = sums[rest] + value;
+            products[mask] = products[rest] * value;
+            divisors[mask] = value != 0 ? divisors[rest] * value : divisors[rest];
+            
+            if (rest == 0) {
+                continue; // single cards are not a valid selection
+            }
+            
+            int size = Integer.bitCount(mask);
+            ensureCapacity(count + 2 + 2 * size);
+            results[count++] = sums[mask];
+            results[count++] = products[mask];
+            
+            for (int bits = mask; bits != 0; bits &= bits - 1) {
+                int first = Integer.numberOfTrailingZeros(bits);
+                int others = mask & ~(1 << first);
+                results[count++] = values[first] - sums[others];
+                results[count++] = (int) (values[first] / divisors[others]);
+            }
+        }
+        
+        return ReachableTargets.fromResults(results, count);
+    }
+    
+    private void ensureCapacity(int required) {
+        if (required > results.length) {
+            results = Arrays.copyOf(results, Math.max(required, results.length * 2));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,326 @@
+package com.heartgame.service;
+
+import com.heartgame.model.User;
+import com.heartgame.util.BloomFilter;
+import com.heartgame.util.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * User store that keeps only active users on the heap (Virtual Identity).
+ *
+ * Users live in three tiers:
+ * 1. Pinned: users changed since the last snapshot. They are held until a
+ *    snapshot containing their latest change has been written.
+ * 2. Hot: the most recently used clean users, in an LRU of fixed size.
+ * 3. Cold: the mapped snapshot file, faulted in one user at a time through
+ *    its on-disk index.
+ * Every user handed out is also tracked weakly, so while any caller still
+ * holds a User, lookups return that same object instead of decoding a
+ * second, diverging copy. A Bloom filter over the snapshot's usernames
+ * answers most misses without touching the file.
+ */
+public class TieredUserStore {
+    
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+    
+    private static final Metrics.Counter HOT_HITS = Metrics.counter("users.cache.hits");
+    private static final Metrics.Counter FAULTS = Metrics.counter("users.cache.faults");
+    private static final Metrics.Counter BLOOM_MISSES = Metrics.counter("users.bloom.misses");
+    
+    private static final class Pinned {
+        final User user;
+        volatile long version;
+        
+        Pinned(User user, long version) {
+            this.user = user;
+            this.version = version;
+        }
+    }
+    
+    private static final class UserRef extends WeakReference<User> {
+        final String username;
+        
+        UserRef(User user, ReferenceQueue<User> queue) {
+            super(user, queue);
+            this.username = user.getUsername();
+        }
+    }
+    
+    /** The snapshot and the filter built from it, swapped together. */
+    private static final class ColdTier {
+        final UserSnapshotCodec.Reader snapshot;
+        final BloomFilter bloom;
+        
+        ColdTier(UserSnapshotCodec.Reader snapshot) {
+            this.snapshot = snapshot;
+            this.bloom = new BloomFilter(snapshot.size(), BLOOM_FALSE_POSITIVE_RATE);
+            snapshot.forEachHash(bloom::add);
+        }
+    }
+    
+    private final Path snapshotFile;
+    private final Map<String, Pinned> pinned = new ConcurrentHashMap<>();
+    private final Map<String, UserRef> live = new ConcurrentHashMap<>();
+    private final ReferenceQueue<User> collected = new ReferenceQueue<>();
+    private final LinkedHashMap<String, User> hot;
+    private final AtomicLong versions = new AtomicLong();
+    private final Object registrationLock = new Object();
+    private volatile ColdTier cold;
+    
+    /**
+     * @param hotCapacity clean users kept in memory besides pinned ones
+     */
+    public TieredUserStore(Path snapshotFile, int hotCapacity) {
+        this.snapshotFile = snapshotFile;
+        this.hot = new LinkedHashMap<String, User>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, User> eldest) {
+                return size() > hotCapacity;
+            }
+        };
+    }
+    
+    /**
+     * Maps the snapshot file, if there is one.
+     */
+    public void open() throws IOException {
+        if (Files.exists(snapshotFile)) {
+            cold = new ColdTier(UserSnapshotCodec.open(snapshotFile));
+        }
+    }
+    
+    /**
+     * Finds a user, faulting it in from the snapshot if needed.
+     *
+     * @return the user, or null if there is no such user
+     */
+    public User get(String username) {
+        User user = liveUser(username);
+        if (user != null) {
+            touch(user);
+            HOT_HITS.increment();
+            return user;
+        }
+        
+        ColdTier tier = cold;
+        int hash = UserSnapshotCodec.hash(username);
+        if (tier == null || !tier.bloom.mightContain(hash)) {
+            return null;
+        }
+        try {
+            user = tier.snapshot.read(username);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read user " + username, e);
+        }
+        if (user == null) {
+            BLOOM_MISSES.increment();
+            return null;
+        }
+        
+        FAULTS.increment();
+        user = canonical(user, false);
+        touch(user);
+        return user;
+    }
+    
+    public boolean contains(String username) {
+        if (liveUser(username) != null) {
+            return true;
+        }
+        ColdTier tier = cold;
+        if (tier == null || !tier.bloom.mightContain(UserSnapshotCodec.hash(username))) {
+            return false;
+        }
+        try {
+            if (tier.snapshot.contains(username)) {
+                return true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read user " + username, e);
+        }
+        BLOOM_MISSES.increment();
+        return false;
+    }
+    
+    /**
+     * Adds a new user unless one with the same name exists.
+     *
+     * @return false if the username is taken
+     */
+    public boolean addIfAbsent(User user) {
+        synchronized (registrationLock) {
+            if (contains(user.getUsername())) {
+                return false;
+            }
+            markChanged(user);
+            return true;
+        }
+    }
+    
+    /**
+     * Pins a changed user until the next snapshot includes the change. If
+     * the object is not the one the store knows under its name, it replaces
+     * it.
+     */
+    public void markChanged(User user) {
+        long version = versions.incrementAndGet();
+        canonical(user, true);
+        pinned.compute(user.getUsername(), (name, entry) -> {
+            if (entry != null && entry.user == user) {
+                entry.version = version;
+                return entry;
+            }
+            return new Pinned(user, version);
+        });
+    }
+    
+    /**
+     * Visits every user once: the pinned users, then the rest of the
+     * snapshot with live objects in place of their decoded copies. Users not
+     * already in memory are decoded for the call and not kept. Users added
+     * meanwhile may be missed.
+     */
+    public void forEach(Consumer<User> action) {
+        // Pinned users first: one unpinned by a concurrent snapshot is then
+        // either visited here or already in the snapshot read below
+        Map<String, Boolean> visited = new HashMap<>(pinned.size() * 2);
+        for (Pinned entry : pinned.values()) {
+            if (visited.put(entry.user.getUsername(), Boolean.TRUE) == null) {
+                action.accept(entry.user);
+            }
+        }
+        
+        ColdTier tier = cold;
+        if (tier == null) {
+            return;
+        }
+        try {
+            tier.snapshot.forEach(decoded -> {
+                if (!visited.containsKey(decoded.getUsername())) {
+                    User user = liveUser(decoded.getUsername());
+                    action.accept(user != null ? user : decoded);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read users snapshot", e);
+        }
+    }
+    
+    /**
+     * Number of users in all tiers.
+     */
+    public int size() {
+        // Same order as forEach, for the same reason
+        List<String> pinnedNames = new ArrayList<>(pinned.keySet());
+        ColdTier tier = cold;
+        if (tier == null) {
+            return pinnedNames.size();
+        }
+        int added = 0;
+        try {
+            for (String username : pinnedNames) {
+                if (!tier.snapshot.contains(username)) {
+                    added++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read users snapshot", e);
+        }
+        return tier.snapshot.size() + added;
+    }
+    
+    /**
+     * Users currently pinned by unsnapshotted changes.
+     */
+    public int getPinnedCount() {
+        return pinned.size();
+    }
+    
+    /**
+     * Writes a new snapshot merging the current one with the pinned users,
+     * switches lookups over to it and unpins every user whose latest change
+     * it contains. Must not run concurrently with itself.
+     */
+    public void writeSnapshot() throws IOException {
+        // Read each version before copying, so a change racing the copy
+        // leaves its user pinned
+        Map<String, Long> copiedVersions = new HashMap<>(pinned.size() * 2);
+        List<User> copies = new ArrayList<>(pinned.size());
+        for (Map.Entry<String, Pinned> entry : pinned.entrySet()) {
+            copiedVersions.put(entry.getKey(), entry.getValue().version);
+            copies.add(entry.getValue().user.snapshot());
+        }
+        
+        ColdTier tier = cold;
+        UserSnapshotCodec.Writer writer = new UserSnapshotCodec.Writer(
+                (tier == null ? 0 : tier.snapshot.size()) + copies.size());
+        if (tier != null) {
+            tier.snapshot.forEach(user -> {
+                if (!copiedVersions.containsKey(user.getUsername())) {
+                    writer.add(user);
+                }
+            });
+        }
+        for (User copy : copies) {
+            writer.add(copy);
+        }
+        writer.writeTo(snapshotFile);
+        
+        cold = new ColdTier(UserSnapshotCodec.open(snapshotFile));
+        for (Map.Entry<String, Long> copied : copiedVersions.entrySet()) {
+            long version = copied.getValue();
+            pinned.computeIfPresent(copied.getKey(), (name, entry) -> entry.version == version ? null : entry);
+        }
+    }
+    
+    private User liveUser(String username) {
+        expungeCollected();
+        UserRef ref = live.get(username);
+        return ref == null ? null : ref.get();
+    }
+    
+    /**
+     * Returns the live object for the user's name, registering this one if
+     * there is none or if replace is set.
+     */
+    private User canonical(User user, boolean replace) {
+        User[] result = new User[1];
+        live.compute(user.getUsername(), (name, ref) -> {
+            User current = ref == null ? null : ref.get();
+            if (current == null || (replace && current != user)) {
+                result[0] = user;
+                return new UserRef(user, collected);
+            }
+            result[0] = current;
+            return ref;
+        });
+        return result[0];
+    }
+    
+    private void touch(User user) {
+        synchronized (hot) {
+            hot.put(user.getUsername(), user);
+        }
+    }
+    
+    private void expungeCollected() {
+        UserRef ref;
+        while ((ref = (UserRef) collected.poll()) != null) {
+            live.remove(ref.username, ref);
+        }
+    }
+}
\ No newline at end of file
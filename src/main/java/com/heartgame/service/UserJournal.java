@@ -0,0 +1,379 @@
+package com.heartgame.service;
+
+import com.heartgame.model.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of user changes (Virtual Identity persistence).
+ *
+ * Instead of rewriting the whole user file after every game, each change is
+ * appended as one small binary record:
+ *   [int length][byte type][payload][int CRC32 of type + payload]
+ * Records carry absolute values (the user's full stats, a single achievement
+ * id), so replaying a record twice is harmless. That lets compaction write a
+ * snapshot without coordinating with writers: the journal is rotated to a
+ * side file, the snapshot is written, and only then is the side file deleted.
+ * Recovery replays the side file (if a compaction was interrupted) and then
+ * the live journal on top of the snapshot, stopping at and truncating the
+ * first torn or corrupt record.
+ */
+public class UserJournal implements Closeable {
+    
+    /**
+     * When appended records are forced to disk.
+     */
+    public enum FsyncPolicy {
+        /** After every record: nothing acknowledged is ever lost. */
+        ALWAYS,
+        /** On a timer: a crash loses at most one interval of changes. */
+        INTERVAL,
+        /** Never explicitly: the OS decides, a crash may lose recent changes. */
+        NEVER
+    }
+    
+    private static final byte REGISTER = 1;
+    private static final byte STATS = 2;
+    private static final byte ACHIEVEMENT = 3;
+    private static final int MAX_RECORD_BYTES = 1 << 16;
+    
+    private final Path file;
+    private final Path rotatedFile;
+    private final FsyncPolicy fsyncPolicy;
+    private final ScheduledExecutorService syncTimer;
+    
+    private FileChannel channel;
+    private boolean unsynced;
+    
+    // Bytes in the live journal, readable without waiting for a commit or fsync
+    private final AtomicLong size = new AtomicLong();
+    
+    public UserJournal(Path file, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
+        this.file = file.toAbsolutePath();
+        this.rotatedFile = this.file.resolveSibling(this.file.getFileName() + ".compacting");
+        this.fsyncPolicy = fsyncPolicy;
+        
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            this.syncTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncTimer.scheduleWithFixedDelay(this::syncQuietly, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.syncTimer = null;
+        }
+    }
+    
+    /**
+     * Replays any journaled changes onto the users loaded from the snapshot
+     * and opens the journal for appending.
+     *
+     * @return number of records replayed
+     */
+    public synchronized int recover(Map<String, User> users) throws IOException {
+        return recover(users::get, user -> users.put(user.getUsername(), user));
+    }
+    
+    /**
+     * Replays journaled changes onto users found through a lookup, e.g. one
+     * that faults them in from disk, and opens the journal for appending.
+     *
+     * @param users    finds a user by name, or returns null if unknown
+     * @param replayed receives every user a record changed or created
+     * @return number of records replayed
+     */
+    public synchronized int recover(Function<String, User> users, Consumer<User> replayed) throws IOException {
+        int records = 0;
+        if (Files.exists(rotatedFile)) {
+            records += replay(rotatedFile, users, replayed, false);
+        }
+        if (Files.exists(file)) {
+            records += replay(file, users, replayed, true);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size.set(channel.size());
+        return records;
+    }
+    
+    public void appendRegister(User user) throws IOException {
+        commit(newBatch().register(user));
+    }
+    
+    public void appendStats(User user) throws IOException {
+        commit(newBatch().stats(user));
+    }
+    
+    public void appendAchievement(User user, String achievementId) throws IOException {
+        commit(newBatch().achievement(user, achievementId));
+    }
+    
+    public Batch newBatch() {
+        return new Batch();
+    }
+    
+    /**
+     * Appends every record in the batch with one write and, under the ALWAYS
+     * policy, one fsync (group commit).
+     */
+    public synchronized void commit(Batch batch) throws IOException {
+        if (channel == null) {
+            throw new IllegalStateException("User journal not recovered yet");
+        }
+        if (batch.records == 0) {
+            return;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(batch.bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            size.addAndGet(channel.write(buffer));
+        }
+        
+        unsynced = true;
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            sync();
+        }
+    }
+    
+    /**
+     * Size of the live journal in bytes. Does not lock, so game threads can
+     * check it while the writer is committing or forcing the journal.
+     */
+    public long size() {
+        return size.get();
+    }
+    
+    /**
+     * Starts a compaction by moving the live journal aside and opening a fresh
+     * one. Returns false, leaving the journal alone, if an earlier compaction
+     * never finished; its side file is then still pending.
+     */
+    public synchronized boolean rotate() throws IOException {
+        if (Files.exists(rotatedFile)) {
+            return false;
+        }
+        channel.force(false);
+        channel.close();
+        Files.move(file, rotatedFile, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size.set(channel.size());
+        return true;
+    }
+    
+    /**
+     * Completes a compaction once a snapshot covering the rotated records is
+     * safely on disk.
+     */
+    public synchronized void finishCompaction() throws IOException {
+        Files.deleteIfExists(rotatedFile);
+    }
+    
+    /**
+     * Forces appended records to disk.
+     */
+    public synchronized void sync() throws IOException {
+        if (unsynced && channel != null && channel.isOpen()) {
+            channel.force(false);
+            unsynced = false;
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (syncTimer != null) {
+            syncTimer.shutdownNow();
+        }
+        if (channel != null && channel.isOpen()) {
+            sync();
+            channel.close();
+        }
+    }
+    
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            System.err.println("Error syncing user journal: " + e.getMessage());
+        }
+    }
+    
+    private interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+    
+    /**
+     * Records encoded in memory and appended together by commit.
+     */
+    public static class Batch {
+        
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        private final DataOutputStream recordOut = new DataOutputStream(record);
+        private final CRC32 crc = new CRC32();
+        private int records;
+        
+        private Batch() {
+        }
+        
+        public Batch register(User user) throws IOException {
+            return add(REGISTER, out -> {
+                out.writeUTF(user.getUsername());
+                writeDateTime(out, user.getRegistrationDate());
+            });
+        }
+        
+        public Batch stats(User user) throws IOException {
+            return add(STATS, out -> {
+                out.writeUTF(user.getUsername());
+                out.writeInt(user.getTotalGamesPlayed());
+                out.writeInt(user.getGamesWon());
+                out.writeInt(user.getGamesLost());
+                out.writeInt(user.getBestScore());
+                out.writeLong(user.getBestTimeSeconds());
+                out.writeInt(user.getCurrentStreak());
+                out.writeInt(user.getBestStreak());
+                writeDateTime(out, user.getLastLogin());
+            });
+        }
+        
+        public Batch achievement(User user, String achievementId) throws IOException {
+            return add(ACHIEVEMENT, out -> {
+                out.writeUTF(user.getUsername());
+                out.writeUTF(achievementId);
+            });
+        }
+        
+        public int size() {
+            return records;
+        }
+        
+        private Batch add(byte type, Payload payload) throws IOException {
+            record.reset();
+            recordOut.writeByte(type);
+            payload.write(recordOut);
+            recordOut.flush();
+            
+            byte[] body = record.toByteArray();
+            crc.reset();
+            crc.update(body, 0, body.length);
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            records++;
+            return this;
+        }
+    }
+    
+    private static int replay(Path path, Function<String, User> users, Consumer<User> replayedUsers,
+                              boolean truncateTornTail) throws IOException {
+        byte[] data = Files.readAllBytes(path);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int replayed = 0;
+        int validLength = 0;
+        
+        while (buffer.remaining() >= 4) {
+            int bodyLength = buffer.getInt();
+            if (bodyLength < 1 || bodyLength > MAX_RECORD_BYTES || buffer.remaining() < bodyLength + 4) {
+                break;
+            }
+            int bodyStart = buffer.position();
+            CRC32 crc = new CRC32();
+            crc.update(data, bodyStart, bodyLength);
+            buffer.position(bodyStart + bodyLength);
+            if (buffer.getInt() != (int) crc.getValue()) {
+                break;
+            }
+            
+            try {
+                apply(new DataInputStream(new ByteArrayInputStream(data, bodyStart, bodyLength)), users, replayedUsers);
+            } catch (IOException e) {
+                break;
+            }
+            replayed++;
+            validLength = buffer.position();
+        }
+        
+        if (validLength < data.length) {
+            System.err.println("User journal " + path.getFileName() + ": ignoring " + (data.length - validLength) + " bytes of torn or corrupt records");
+            if (truncateTornTail) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                    channel.force(false);
+                }
+            }
+        }
+        return replayed;
+    }
+    
+    private static void apply(DataInputStream in, Function<String, User> users, Consumer<User> replayed) throws IOException {
+        byte type = in.readByte();
+        String username = in.readUTF();
+        User user = users.apply(username);
+        
+        switch (type) {
+            case REGISTER:
+                LocalDateTime registered = readDateTime(in);
+                if (user == null) {
+                    user = new User(username);
+                    user.setRegistrationDate(registered);
+                    replayed.accept(user);
+                }
+                break;
+            case STATS:
+                if (user == null) {
+                    user = new User(username);
+                }
+                user.restoreStats(in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readLong(), in.readInt(), in.readInt(), readDateTime(in));
+                replayed.accept(user);
+                break;
+            case ACHIEVEMENT:
+                String achievementId = in.readUTF();
+                if (user != null) {
+                    user.unlockAchievement(achievementId);
+                    replayed.accept(user);
+                }
+                break;
+            default:
+                throw new IOException("Unknown user journal record type " + type);
+        }
+    }
+    
+    private static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+    
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+}
\ No newline at end of file
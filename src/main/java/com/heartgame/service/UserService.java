@@ -2,97 +2,156 @@ package com.heartgame.service;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
 import com.heartgame.model.Achievement;
 import com.heartgame.model.User;
+import com.heartgame.model.UserStat;
 import com.heartgame.util.FileManager;
 import com.heartgame.util.LocalDateTimeAdapter;
+import com.heartgame.util.Metrics;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Service for managing users (Virtual Identity).
- * 
+ *
  * This class demonstrates:
  * 1. LOW COUPLING - doesn't depend on UI or game logic
  * 2. HIGH COHESION - only handles user-related operations
- * 3. INTEROPERABILITY - saves/loads user data from JSON files
+ * 3. INTEROPERABILITY - imports/exports user data as JSON files
  * 4. VIRTUAL IDENTITY - manages user profiles and authentication
  */
 public class UserService {
     
-    private static final String USERS_FILE = "users.json";
-    private Map<String, User> users;
+    private static final String SNAPSHOT_FILE = "users.bin";
+    private static final String LEGACY_USERS_FILE = "users.json";
+    private static final String JOURNAL_FILE = "users.journal";
+    private static final long COMPACT_THRESHOLD_BYTES = 1L << 20;
+    private static final int HOT_USERS = 10_000;
+    
+    private static final Metrics.Timer LOAD_TIMER = Metrics.timer("users.load");
+    private static final Metrics.Timer SAVE_TIMER = Metrics.timer("users.save");
+    private static final Metrics.Timer ACHIEVEMENT_TIMER = Metrics.timer("users.achievements");
+    private static final Metrics.Counter REGISTRATIONS = Metrics.counter("users.registered");
+    private static final Metrics.Counter UPDATES = Metrics.counter("users.updates");
+    private static final Metrics.Counter UNLOCKS = Metrics.counter("users.unlocks");
+    private static final Metrics.Counter ERRORS = Metrics.counter("users.errors");
+    
+    private final TieredUserStore users;
+    private final Path legacyUsersFile;
     private Gson gson;
-    private List<Achievement> availableAchievements;
+    private AchievementEngine achievementEngine;
+    private UserJournal journal;
+    private UserWriteBehind writeBehind;
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     public UserService() {
+        this(UserJournal.FsyncPolicy.INTERVAL, 1000);
+    }
+    
+    /**
+     * Creates the service with an explicit journal durability policy.
+     *
+     * @param fsyncIntervalMillis how often INTERVAL forces the journal to disk
+     */
+    public UserService(UserJournal.FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
+        this(Paths.get(""), fsyncPolicy, fsyncIntervalMillis);
+    }
+    
+    /**
+     * Creates the service keeping its snapshot and journal in the given
+     * directory instead of the working directory.
+     */
+    public UserService(Path dataDirectory, UserJournal.FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
+        this.users = new TieredUserStore(dataDirectory.resolve(SNAPSHOT_FILE), HOT_USERS);
+        this.legacyUsersFile = dataDirectory.resolve(LEGACY_USERS_FILE);
+        
         // Initialize Gson with custom adapter for LocalDateTime (Interoperability)
         this.gson = new GsonBuilder()
                 .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
                 .setPrettyPrinting()
                 .create();
         
-        this.users = new HashMap<>();
-        this.availableAchievements = initializeAchievements();
+        this.achievementEngine = initializeAchievements();
+        this.journal = new UserJournal(dataDirectory.resolve(JOURNAL_FILE), fsyncPolicy, fsyncIntervalMillis);
         loadUsers();
+        this.writeBehind = new UserWriteBehind(journal, 512, 200, 10_000);
     }
     
     /**
-     * Initialize available achievements (Virtual Identity).
+     * Initialize available achievements and the rules that unlock them (Virtual Identity).
      */
-    private List<Achievement> initializeAchievements() {
-        List<Achievement> achievements = new ArrayList<>();
+    private AchievementEngine initializeAchievements() {
+        AchievementEngine engine = new AchievementEngine();
         
-        achievements.add(new Achievement(
+        engine.atLeast(new Achievement(
             "FIRST_WIN",
             "First Victory",
             "Win your first game",
             "🏆"
-        ));
+        ), UserStat.GAMES_WON, 1);
         
-        achievements.add(new Achievement(
+        engine.atMost(new Achievement(
             "SPEED_DEMON",
             "Speed Demon",
             "Win a game in under 30 seconds",
             "⚡"
-        ));
+        ), UserStat.BEST_TIME_SECONDS, 30);
         
-        achievements.add(new Achievement(
+        engine.atLeast(new Achievement(
             "PERFECT_SCORE",
             "Perfect Score",
             "Achieve a score of 1000 or more",
             "⭐"
-        ));
+        ), UserStat.BEST_SCORE, 1000);
         
-        achievements.add(new Achievement(
+        engine.atLeast(new Achievement(
             "DEDICATED",
             "Dedicated Player",
             "Play 10 games",
             "🎮"
-        ));
+        ), UserStat.GAMES_PLAYED, 10);
         
-        achievements.add(new Achievement(
+        engine.atLeast(new Achievement(
             "STREAK_MASTER",
             "Streak Master",
             "Win 5 games in a row",
             "🔥"
-        ));
+        ), UserStat.BEST_STREAK, 5);
         
-        achievements.add(new Achievement(
+        engine.atLeast(new Achievement(
             "VETERAN",
             "Veteran",
             "Play 50 games",
             "🎖️"
-        ));
+        ), UserStat.GAMES_PLAYED, 50);
         
-        return achievements;
+        return engine;
     }
     
     /**
@@ -103,38 +162,46 @@ public class UserService {
             return false;
         }
         
-        if (users.containsKey(username)) {
+        // Register-if-absent is a single atomic step in the store
+        User newUser = new User(username);
+        if (!users.addIfAbsent(newUser)) {
             return false; // User already exists
         }
-        
-        User newUser = new User(username);
-        users.put(username, newUser);
-        saveUsers();
+        REGISTRATIONS.increment();
+        writeBehind.markRegistered(newUser);
+        leaderboard.update(newUser);
+        maybeCompact();
         
         return true;
     }
     
     /**
-     * Authenticates a user (Virtual Identity).
+     * Authenticates a user (Virtual Identity). Users not in memory are read
+     * from the snapshot on demand.
      */
     public User login(String username) {
-        return users.get(username);
+        return username == null ? null : users.get(username);
     }
     
     /**
-     * Checks if a username exists.
+     * Checks if a username exists. Most unknown names are rejected by a
+     * Bloom filter without reading the snapshot.
      */
     public boolean userExists(String username) {
-        return users.containsKey(username);
+        return username != null && users.contains(username);
     }
     
     /**
-     * Updates user data and saves to file.
+     * Updates user data. The change reaches the journal in the next
+     * write-behind batch; call flush() to wait for it.
      */
     public void updateUser(User user) {
         if (user != null) {
-            users.put(user.getUsername(), user);
-            saveUsers();
+            users.markChanged(user);
+            UPDATES.increment();
+            writeBehind.markStatsChanged(user);
+            leaderboard.update(user);
+            maybeCompact();
         }
     }
     
@@ -143,96 +210,248 @@ public class UserService {
      * Returns list of newly unlocked achievements.
      */
     public List<Achievement> checkAndUnlockAchievements(User user) {
-        List<Achievement> newlyUnlocked = new ArrayList<>();
-        
-        // First Win
-        if (user.getGamesWon() >= 1 && !user.hasAchievement("FIRST_WIN")) {
-            user.unlockAchievement("FIRST_WIN");
-            newlyUnlocked.add(getAchievementById("FIRST_WIN"));
-        }
-        
-        // Speed Demon
-        if (user.getBestTimeSeconds() <= 30 && !user.hasAchievement("SPEED_DEMON")) {
-            user.unlockAchievement("SPEED_DEMON");
-            newlyUnlocked.add(getAchievementById("SPEED_DEMON"));
+        return checkAndUnlockAchievements(user, UserStat.ALL);
+    }
+    
+    /**
+     * Checks only the achievements depending on the changed stats, as
+     * reported by User.updateStats. Returns an empty list without allocating
+     * when nothing unlocks.
+     */
+    public List<Achievement> checkAndUnlockAchievements(User user, int changedStats) {
+        long start = ACHIEVEMENT_TIMER.start();
+        List<Achievement> newlyUnlocked = achievementEngine.evaluate(user, changedStats);
+        ACHIEVEMENT_TIMER.stop(start);
+        if (newlyUnlocked.isEmpty()) {
+            return newlyUnlocked;
         }
         
-        // Perfect Score
-        if (user.getBestScore() >= 1000 && !user.hasAchievement("PERFECT_SCORE")) {
-            user.unlockAchievement("PERFECT_SCORE");
-            newlyUnlocked.add(getAchievementById("PERFECT_SCORE"));
+        UNLOCKS.add(newlyUnlocked.size());
+        // Pin the user again: a snapshot taken since the last update may
+        // have released it, and the next one would then write the cold
+        // copy without these unlocks and drop the journal holding them
+        users.markChanged(user);
+        for (Achievement achievement : newlyUnlocked) {
+            writeBehind.markAchievement(user, achievement.getId());
         }
-        
-        // Dedicated
-        if (user.getTotalGamesPlayed() >= 10 && !user.hasAchievement("DEDICATED")) {
-            user.unlockAchievement("DEDICATED");
-            newlyUnlocked.add(getAchievementById("DEDICATED"));
+        maybeCompact();
+        return newlyUnlocked;
+    }
+    
+    public List<Achievement> getAvailableAchievements() {
+        return achievementEngine.getAchievements();
+    }
+    
+    /**
+     * Maps the binary users snapshot and replays the journal of changes made
+     * since it was written. Users stay on disk until they are looked up;
+     * only the leaderboards see every user once. Without a snapshot, users
+     * are imported from a users.json left by older versions (Interoperability
+     * - File I/O) and written to a new snapshot, which then is the primary copy.
+     */
+    private void loadUsers() {
+        long start = LOAD_TIMER.start();
+        try {
+            users.open();
+        } catch (IOException e) {
+            // Starting empty would overwrite the damaged snapshot on close
+            throw new UncheckedIOException("Cannot read users snapshot", e);
         }
-        
-        // Streak Master
-        if (user.getBestStreak() >= 5 && !user.hasAchievement("STREAK_MASTER")) {
-            user.unlockAchievement("STREAK_MASTER");
-            newlyUnlocked.add(getAchievementById("STREAK_MASTER"));
+        if (users.size() == 0 && Files.exists(legacyUsersFile)) {
+            try {
+                for (User user : readJson(legacyUsersFile).values()) {
+                    users.markChanged(user);
+                }
+                users.writeSnapshot();
+                System.out.println("Imported users from " + legacyUsersFile.getFileName());
+            } catch (IOException e) {
+                ERRORS.increment();
+                System.err.println("Error importing users: " + e.getMessage());
+            }
+        } else if (users.size() == 0) {
+            System.out.println("No existing users file found. Starting fresh.");
         }
         
-        // Veteran
-        if (user.getTotalGamesPlayed() >= 50 && !user.hasAchievement("VETERAN")) {
-            user.unlockAchievement("VETERAN");
-            newlyUnlocked.add(getAchievementById("VETERAN"));
+        try {
+            journal.recover(users::get, users::markChanged);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open user journal", e);
         }
         
-        if (!newlyUnlocked.isEmpty()) {
-            updateUser(user);
+        users.forEach(leaderboard::update);
+        LOAD_TIMER.stop(start);
+    }
+    
+    /**
+     * Saves users to the binary snapshot, which releases users pinned by
+     * changes it now contains.
+     */
+    private void saveUsers() throws IOException {
+        long start = SAVE_TIMER.start();
+        users.writeSnapshot();
+        SAVE_TIMER.stop(start);
+    }
+    
+    private Map<String, User> readJson(Path file) throws IOException {
+        String json = FileManager.readFile(file.toString());
+        Type type = new TypeToken<HashMap<String, User>>(){}.getType();
+        try {
+            Map<String, User> loadedUsers = gson.fromJson(json, type);
+            return loadedUsers != null ? loadedUsers : new HashMap<>();
+        } catch (JsonParseException e) {
+            throw new IOException("Malformed users JSON in " + file.getFileName(), e);
         }
-        
-        return newlyUnlocked;
     }
     
-    private Achievement getAchievementById(String id) {
-        return availableAchievements.stream()
-                .filter(a -> a.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+    /**
+     * Exports every user as JSON, in the format of the old users.json
+     * (Interoperability - File I/O).
+     */
+    public void exportJson(Path file) throws IOException {
+        writeBehind.flush();
+        Map<String, User> copies = new HashMap<>();
+        users.forEach(user -> copies.put(user.getUsername(), user.snapshot()));
+        FileManager.writeFile(file.toString(), gson.toJson(copies));
     }
     
-    public List<Achievement> getAvailableAchievements() {
-        return new ArrayList<>(availableAchievements);
+    /**
+     * Imports users from a JSON export, replacing users with the same name,
+     * and writes a snapshot so the import survives a crash.
+     *
+     * @return the number of users imported
+     */
+    public int importJson(Path file) throws IOException {
+        Map<String, User> imported = readJson(file);
+        for (User user : imported.values()) {
+            users.markChanged(user);
+            leaderboard.update(user);
+        }
+        saveSnapshot();
+        return imported.size();
+    }
+    
+    // Called on game threads: reads the journal size without locking and
+    // leaves every file operation to the compactor
+    private void maybeCompact() {
+        if (journal.size() >= COMPACT_THRESHOLD_BYTES) {
+            startCompaction();
+        }
     }
     
     /**
-     * Loads users from JSON file (Interoperability - File I/O).
+     * Blocks until every change made so far is in the journal.
      */
-    private void loadUsers() {
+    public void flush() {
         try {
-            String json = FileManager.readFile(USERS_FILE);
-            Type type = new TypeToken<HashMap<String, User>>(){}.getType();
-            Map<String, User> loadedUsers = gson.fromJson(json, type);
-            
-            if (loadedUsers != null) {
-                this.users = loadedUsers;
-            }
+            writeBehind.flush();
         } catch (IOException e) {
-            System.out.println("No existing users file found. Starting fresh.");
-            this.users = new HashMap<>();
+            ERRORS.increment();
+            System.err.println("Error saving users: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Folds the journal into a fresh snapshot in the background. The journal
+     * is rotated before the user map is copied, so every change is either in
+     * the copy or still to be written to the new journal.
+     */
+    private void startCompaction() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        
+        try {
+            compactor.execute(() -> {
+                try {
+                    journal.rotate();
+                    saveUsers();
+                    journal.finishCompaction();
+                } catch (IOException | RuntimeException e) {
+                    // The rotated journal stays on disk and is retried next time
+                    ERRORS.increment();
+                    System.err.println("Error compacting users: " + e.getMessage());
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closing; close() writes the final snapshot itself
+            compacting.set(false);
+        }
+    }
+    
+    /**
+     * Writes a full snapshot now and folds the journal into it. Runs on the
+     * compactor thread, so it never overlaps a background compaction.
+     */
+    public void saveSnapshot() throws IOException {
+        writeBehind.flush();
+        Future<?> saved = compactor.submit(() -> {
+            journal.rotate();
+            saveUsers();
+            journal.finishCompaction();
+            return null;
+        });
+        
+        try {
+            saved.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving users");
         }
     }
     
     /**
-     * Saves users to JSON file (Interoperability - File I/O).
+     * Writes a final snapshot and closes the journal.
      */
-    private void saveUsers() {
+    public synchronized void close() {
+        compactor.shutdown();
         try {
-            String json = gson.toJson(users);
-            FileManager.writeFile(USERS_FILE, json);
+            writeBehind.shutdown();
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+            journal.rotate();
+            saveUsers();
+            journal.finishCompaction();
+            journal.close();
         } catch (IOException e) {
+            ERRORS.increment();
             System.err.println("Error saving users: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
     
     /**
-     * Gets all users (for leaderboard, etc.)
+     * Gets all users. This reads every user from the snapshot, so prefer
+     * login() and the leaderboard.
      */
     public List<User> getAllUsers() {
-        return new ArrayList<>(users.values());
+        List<User> all = new ArrayList<>(users.size());
+        users.forEach(all::add);
+        return all;
+    }
+    
+    /**
+     * Number of registered users, without loading them.
+     */
+    public int getUserCount() {
+        return users.size();
+    }
+    
+    /**
+     * The tiered store behind this service, e.g. for cache statistics.
+     */
+    public TieredUserStore getStore() {
+        return users;
+    }
+    
+    /**
+     * Live leaderboards, kept current by registerUser and updateUser.
+     */
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
     }
 }
\ No newline at end of file
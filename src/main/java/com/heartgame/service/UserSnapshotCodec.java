@@ -0,0 +1,512 @@
+package com.heartgame.service;
+
+import com.heartgame.model.User;
+import com.heartgame.util.FileManager;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary snapshot of the user database (Virtual Identity persistence).
+ *
+ * Layout, all integers big-endian or as LEB128 varints:
+ *   [int magic "HGUS"][int version]
+ *   [user records]
+ *   [varint id count][achievement ids, each varint length + UTF-8]
+ *   [index: power-of-two slots of (int username hash, int record offset)]
+ *   [int user count][int id table offset][int index offset][int index slots]
+ *   [int CRC32 of everything before it]
+ * Each user record is its username, its counters as zigzag varints, a
+ * presence byte for the two timestamps, the timestamps as UTC epoch seconds
+ * and nanos (the last login as seconds after registration), and its
+ * achievements as indexes into the id table. A typical user takes 25 to
+ * 40 bytes instead of the few hundred of the pretty-printed JSON.
+ *
+ * The index is an open-addressing hash table kept at most half full, so a
+ * single user can be found and decoded without reading the others. Hash 0
+ * marks an empty slot. Files are read through a read-only memory map, so
+ * lookups decode straight from the page cache and the file never has to be
+ * copied onto the heap. Snapshots are limited to 2 GB.
+ */
+public final class UserSnapshotCodec {
+    
+    private static final int MAGIC = 0x48475553; // "HGUS"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final int FOOTER_BYTES = 20;
+    
+    private static final int HAS_REGISTRATION = 1;
+    private static final int HAS_LAST_LOGIN = 2;
+    
+    private UserSnapshotCodec() {
+    }
+    
+    /**
+     * Encodes the users and replaces the file atomically.
+     */
+    public static void write(Path file, Collection<User> users) throws IOException {
+        Writer writer = new Writer(users.size());
+        for (User user : users) {
+            writer.add(user);
+        }
+        writer.writeTo(file);
+    }
+    
+    /**
+     * Decodes every user of a snapshot.
+     */
+    public static Map<String, User> read(Path file) throws IOException {
+        Reader reader = open(file);
+        Map<String, User> users = new HashMap<>(reader.size() * 4 / 3 + 1);
+        reader.forEach(user -> users.put(user.getUsername(), user));
+        return users;
+    }
+    
+    /**
+     * Maps a snapshot and checks its header and checksum.
+     *
+     * @throws IOException if the file is missing, truncated, corrupt or of
+     *                     another version
+     */
+    public static Reader open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("User snapshot too large: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        
+        if (buffer.limit() < HEADER_BYTES + FOOTER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a user snapshot: " + file);
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported user snapshot version " + version + ": " + file);
+        }
+        
+        int crcAt = buffer.limit() - 4;
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = buffer.duplicate();
+        checked.limit(crcAt);
+        crc.update(checked);
+        if ((int) crc.getValue() != buffer.getInt(crcAt)) {
+            throw new IOException("User snapshot checksum mismatch: " + file);
+        }
+        
+        try {
+            return new Reader(buffer, crcAt - 16);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt user snapshot: " + file, e);
+        }
+    }
+    
+    /**
+     * Stable, never zero hash of a username, as stored in the index.
+     */
+    static int hash(String username) {
+        int h = username.hashCode() * 0x9E3779B9;
+        h ^= h >>> 16;
+        return h == 0 ? 1 : h;
+    }
+    
+    /**
+     * Builds a snapshot in memory, one user at a time.
+     */
+    public static final class Writer {
+        private final Encoder out;
+        private final Map<String, Integer> idIndex = new HashMap<>();
+        private final List<String> ids = new ArrayList<>();
+        private int[] hashes;
+        private int[] offsets;
+        private int count;
+        
+        public Writer(int expectedUsers) {
+            this.out = new Encoder(64 + expectedUsers * 48);
+            this.hashes = new int[Math.max(16, expectedUsers)];
+            this.offsets = new int[hashes.length];
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+        
+        /**
+         * Appends a user. Usernames must be unique within a snapshot.
+         */
+        public void add(User user) {
+            if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            hashes[count] = hash(user.getUsername());
+            offsets[count] = out.size;
+            count++;
+            
+            out.writeString(user.getUsername());
+            out.writeVarLong(zigzag(user.getTotalGamesPlayed()));
+            out.writeVarLong(zigzag(user.getGamesWon()));
+            out.writeVarLong(zigzag(user.getGamesLost()));
+            out.writeVarLong(zigzag(user.getBestScore()));
+            // Long.MAX_VALUE (no win yet) would take ten bytes as it is
+            long bestTime = user.getBestTimeSeconds();
+            out.writeVarLong(bestTime == Long.MAX_VALUE ? 0 : zigzag(bestTime) + 1);
+            out.writeVarLong(zigzag(user.getCurrentStreak()));
+            out.writeVarLong(zigzag(user.getBestStreak()));
+            
+            LocalDateTime registered = user.getRegistrationDate();
+            LocalDateTime lastLogin = user.getLastLogin();
+            out.writeByte((registered != null ? HAS_REGISTRATION : 0) | (lastLogin != null ? HAS_LAST_LOGIN : 0));
+            long base = 0;
+            if (registered != null) {
+                base = registered.toEpochSecond(ZoneOffset.UTC);
+                out.writeVarLong(zigzag(base));
+                out.writeVarLong(registered.getNano());
+            }
+            if (lastLogin != null) {
+                out.writeVarLong(zigzag(lastLogin.toEpochSecond(ZoneOffset.UTC) - base));
+                out.writeVarLong(lastLogin.getNano());
+            }
+            
+            List<String> unlocked = user.getUnlockedAchievements();
+            out.writeVarLong(unlocked.size());
+            for (String id : unlocked) {
+                Integer index = idIndex.get(id);
+                if (index == null) {
+                    index = ids.size();
+                    idIndex.put(id, index);
+                    ids.add(id);
+                }
+                out.writeVarLong(index);
+            }
+        }
+        
+        public int size() {
+            return count;
+        }
+        
+        /**
+         * Appends the id table, index and footer and replaces the file
+         * atomically.
+         */
+        public void writeTo(Path file) throws IOException {
+            int idsOffset = out.size;
+            out.writeVarLong(ids.size());
+            for (String id : ids) {
+                out.writeString(id);
+            }
+            
+            int slots = Integer.highestOneBit(Math.max(1, count)) * 4;
+            int mask = slots - 1;
+            int[] table = new int[slots * 2];
+            for (int i = 0; i < count; i++) {
+                int slot = hashes[i] & mask;
+                while (table[slot * 2] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot * 2] = hashes[i];
+                table[slot * 2 + 1] = offsets[i];
+            }
+            int indexOffset = out.size;
+            for (int value : table) {
+                out.writeInt(value);
+            }
+            
+            out.writeInt(count);
+            out.writeInt(idsOffset);
+            out.writeInt(indexOffset);
+            out.writeInt(slots);
+            CRC32 crc = new CRC32();
+            crc.update(out.bytes, 0, out.size);
+            out.writeInt((int) crc.getValue());
+            FileManager.writeFileAtomically(file, out.bytes, out.size);
+        }
+    }
+    
+    /**
+     * A mapped snapshot. Safe for concurrent use: every read works on its
+     * own view of the mapping.
+     */
+    public static final class Reader {
+        private final ByteBuffer buffer;
+        private final int count;
+        private final int recordsEnd;
+        private final int indexOffset;
+        private final int slotMask;
+        private final String[] ids;
+        
+        private Reader(ByteBuffer buffer, int footer) throws IOException {
+            this.buffer = buffer;
+            this.count = buffer.getInt(footer);
+            this.recordsEnd = buffer.getInt(footer + 4);
+            this.indexOffset = buffer.getInt(footer + 8);
+            int slots = buffer.getInt(footer + 12);
+            if (count < 0 || slots < 1 || Integer.bitCount(slots) != 1 || count > slots
+                    || recordsEnd < HEADER_BYTES || indexOffset < recordsEnd
+                    || (long) indexOffset + slots * 8L != footer) {
+                throw new IOException("Malformed snapshot footer");
+            }
+            this.slotMask = slots - 1;
+            
+            Decoder in = decoderAt(recordsEnd);
+            this.ids = new String[in.readCount()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = in.readString();
+            }
+        }
+        
+        public int size() {
+            return count;
+        }
+        
+        public boolean contains(String username) throws IOException {
+            return find(username) >= 0;
+        }
+        
+        /**
+         * Decodes one user, or returns null if the snapshot does not hold it.
+         */
+        public User read(String username) throws IOException {
+            int offset = find(username);
+            return offset < 0 ? null : decodeAt(offset);
+        }
+        
+        /**
+         * Decodes every user in file order.
+         */
+        public void forEach(Consumer<User> action) throws IOException {
+            Decoder in = decoderAt(HEADER_BYTES);
+            for (int i = 0; i < count; i++) {
+                action.accept(decode(in));
+            }
+            if (in.buffer.position() != recordsEnd) {
+                throw new IOException("User records end at " + in.buffer.position() + ", expected " + recordsEnd);
+            }
+        }
+        
+        /**
+         * Passes the index hash of every user, without decoding any.
+         */
+        public void forEachHash(IntConsumer action) {
+            for (int slot = 0; slot <= slotMask; slot++) {
+                int hash = buffer.getInt(indexOffset + slot * 8);
+                if (hash != 0) {
+                    action.accept(hash);
+                }
+            }
+        }
+        
+        private int find(String username) throws IOException {
+            int hash = hash(username);
+            byte[] utf8 = null;
+            for (int slot = hash & slotMask; ; slot = (slot + 1) & slotMask) {
+                int at = indexOffset + slot * 8;
+                int stored = buffer.getInt(at);
+                if (stored == 0) {
+                    return -1;
+                }
+                if (stored == hash) {
+                    if (utf8 == null) {
+                        utf8 = username.getBytes(StandardCharsets.UTF_8);
+                    }
+                    int offset = buffer.getInt(at + 4);
+                    if (decoderAt(offset).matchesString(utf8)) {
+                        return offset;
+                    }
+                }
+            }
+        }
+        
+        private User decodeAt(int offset) throws IOException {
+            return decode(decoderAt(offset));
+        }
+        
+        private Decoder decoderAt(int offset) throws IOException {
+            if (offset < HEADER_BYTES || offset >= indexOffset) {
+                throw new IOException("Snapshot offset out of range: " + offset);
+            }
+            ByteBuffer view = buffer.duplicate();
+            view.limit(indexOffset);
+            view.position(offset);
+            return new Decoder(view);
+        }
+        
+        private User decode(Decoder in) throws IOException {
+            try {
+                return decodeUser(in, ids);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new IOException("Corrupt user record", e);
+            }
+        }
+    }
+    
+    private static User decodeUser(Decoder in, String[] ids) throws IOException {
+        User user = new User(in.readString());
+        int totalGamesPlayed = unzigzagInt(in.readVarLong());
+        int gamesWon = unzigzagInt(in.readVarLong());
+        int gamesLost = unzigzagInt(in.readVarLong());
+        int bestScore = unzigzagInt(in.readVarLong());
+        long bestTime = in.readVarLong();
+        int currentStreak = unzigzagInt(in.readVarLong());
+        int bestStreak = unzigzagInt(in.readVarLong());
+        
+        int present = in.readByte();
+        LocalDateTime registered = null;
+        LocalDateTime lastLogin = null;
+        long base = 0;
+        if ((present & HAS_REGISTRATION) != 0) {
+            base = unzigzag(in.readVarLong());
+            registered = LocalDateTime.ofEpochSecond(base, (int) in.readVarLong(), ZoneOffset.UTC);
+        }
+        if ((present & HAS_LAST_LOGIN) != 0) {
+            long seconds = base + unzigzag(in.readVarLong());
+            lastLogin = LocalDateTime.ofEpochSecond(seconds, (int) in.readVarLong(), ZoneOffset.UTC);
+        }
+        
+        user.restoreStats(totalGamesPlayed, gamesWon, gamesLost, bestScore,
+                bestTime == 0 ? Long.MAX_VALUE : unzigzag(bestTime - 1),
+                currentStreak, bestStreak, lastLogin);
+        user.setRegistrationDate(registered);
+        
+        for (int unlocked = in.readCount(); unlocked > 0; unlocked--) {
+            long id = in.readVarLong();
+            if (id < 0 || id >= ids.length) {
+                throw new IOException("Unknown achievement index " + id);
+            }
+            user.unlockAchievement(ids[(int) id]);
+        }
+        return user;
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    private static int unzigzagInt(long value) {
+        return (int) unzigzag(value);
+    }
+    
+    /**
+     * Growable byte array with varint and string writers.
+     */
+    private static final class Encoder {
+        byte[] bytes;
+        int size;
+        
+        Encoder(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+        
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+        
+        void writeInt(int value) {
+            ensure(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+        
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+        
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+        
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+            }
+        }
+    }
+    
+    /**
+     * Varint and string readers over a view of the mapped file.
+     */
+    private static final class Decoder {
+        final ByteBuffer buffer;
+        private byte[] scratch = new byte[64];
+        
+        Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        int readByte() {
+            return buffer.get() & 0xFF;
+        }
+        
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+        
+        int readCount() throws IOException {
+            long value = readVarLong();
+            if (value < 0 || value > buffer.remaining()) {
+                throw new IOException("Implausible count " + value);
+            }
+            return (int) value;
+        }
+        
+        String readString() throws IOException {
+            int length = readCount();
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        
+        boolean matchesString(byte[] utf8) throws IOException {
+            if (readCount() != utf8.length) {
+                return false;
+            }
+            for (byte b : utf8) {
+                if (buffer.get() != b) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,288 @@
+package com.heartgame.service;
+
+import com.heartgame.model.User;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer between UserService and its journal.
+ *
+ * Callers only mark a user dirty; repeated changes to the same user coalesce
+ * into one pending entry. A background thread drains the dirty set once it
+ * reaches {@code batchSize} users or the oldest change is {@code maxDelayMillis}
+ * old, and writes the whole batch as a single journal commit built from each
+ * user's latest state. When the dirty set reaches {@code maxDirty} the caller
+ * flushes inline, which bounds memory and slows producers down to the speed
+ * of the disk.
+ */
+public class UserWriteBehind {
+    
+    private static class Pending {
+        final User user;
+        boolean registered;
+        boolean statsChanged;
+        List<String> achievements;
+        
+        Pending(User user) {
+            this.user = user;
+        }
+    }
+    
+    private final UserJournal journal;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int maxDirty;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushDue = lock.newCondition();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private LinkedHashMap<String, Pending> dirty = new LinkedHashMap<>();
+    private long oldestDirtyAt;
+    private boolean shutdown;
+    private final Thread flusher;
+    
+    private final AtomicLong changesMarked = new AtomicLong();
+    private final AtomicLong recordsWritten = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    
+    public UserWriteBehind(UserJournal journal, int batchSize, long maxDelayMillis, int maxDirty) {
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.maxDirty = Math.max(batchSize, maxDirty);
+        this.flusher = new Thread(this::runFlusher, "user-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    public void markRegistered(User user) {
+        mark(user).registered = true;
+        afterMark();
+    }
+    
+    public void markStatsChanged(User user) {
+        mark(user).statsChanged = true;
+        afterMark();
+    }
+    
+    public void markAchievement(User user, String achievementId) {
+        Pending pending = mark(user);
+        if (pending.achievements == null) {
+            pending.achievements = new ArrayList<>(2);
+        }
+        pending.achievements.add(achievementId);
+        afterMark();
+    }
+    
+    // Returns with the lock held; afterMark releases it
+    private Pending mark(User user) {
+        lock.lock();
+        if (shutdown) {
+            lock.unlock();
+            throw new IllegalStateException("User write-behind is shut down");
+        }
+        if (dirty.isEmpty()) {
+            oldestDirtyAt = System.nanoTime();
+        }
+        changesMarked.incrementAndGet();
+        return dirty.computeIfAbsent(user.getUsername(), name -> new Pending(user));
+    }
+    
+    private void afterMark() {
+        int size = dirty.size();
+        if (size >= batchSize) {
+            flushDue.signal();
+        }
+        lock.unlock();
+        
+        if (size >= maxDirty) {
+            // Backpressure: the producer pays for the flush it made necessary
+            if (!flushQuietly()) {
+                // Disk trouble: back off instead of spinning on the same batch
+                try {
+                    TimeUnit.NANOSECONDS.sleep(maxDelayNanos);
+                } catch (InterruptedException e) {
+                    // The caller decides what an interrupt means
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Writes every change marked so far. Returns once they are committed.
+     */
+    public void flush() throws IOException {
+        flushLock.lock();
+        try {
+            Map<String, Pending> batch;
+            lock.lock();
+            try {
+                if (dirty.isEmpty()) {
+                    return;
+                }
+                batch = dirty;
+                dirty = new LinkedHashMap<>();
+            } finally {
+                lock.unlock();
+            }
+            
+            try {
+                write(batch);
+            } catch (IOException e) {
+                requeue(batch);
+                throw e;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    /**
+     * Stops the background thread after a final flush.
+     */
+    public void shutdown() throws IOException {
+        lock.lock();
+        try {
+            shutdown = true;
+            flushDue.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+    
+    public int getDirtyCount() {
+        lock.lock();
+        try {
+            return dirty.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public long getChangesMarked() {
+        return changesMarked.get();
+    }
+    
+    public long getRecordsWritten() {
+        return recordsWritten.get();
+    }
+    
+    /**
+     * Number of journal commits, i.e. disk writes.
+     */
+    public long getCommits() {
+        return commits.get();
+    }
+    
+    /**
+     * Puts a batch that failed to commit back in front of newer changes.
+     */
+    private void requeue(Map<String, Pending> batch) {
+        lock.lock();
+        try {
+            LinkedHashMap<String, Pending> merged = new LinkedHashMap<>(batch);
+            for (Pending newer : dirty.values()) {
+                Pending older = merged.get(newer.user.getUsername());
+                if (older == null) {
+                    merged.put(newer.user.getUsername(), newer);
+                    continue;
+                }
+                older.registered |= newer.registered;
+                older.statsChanged |= newer.statsChanged;
+                if (newer.achievements != null) {
+                    if (older.achievements == null) {
+                        older.achievements = new ArrayList<>(2);
+                    }
+                    older.achievements.addAll(newer.achievements);
+                }
+            }
+            dirty = merged;
+            oldestDirtyAt = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void write(Map<String, Pending> batch) throws IOException {
+        UserJournal.Batch records = journal.newBatch();
+        for (Pending pending : batch.values()) {
+            // A consistent copy, so a game finishing mid-flush cannot tear the record
+            User state = pending.user.snapshot();
+            if (pending.registered) {
+                records.register(state);
+            }
+            if (pending.statsChanged) {
+                records.stats(state);
+            }
+            if (pending.achievements != null) {
+                for (String achievementId : pending.achievements) {
+                    records.achievement(pending.user, achievementId);
+                }
+            }
+        }
+        journal.commit(records);
+        recordsWritten.addAndGet(records.size());
+        commits.incrementAndGet();
+    }
+    
+    private void runFlusher() {
+        while (true) {
+            lock.lock();
+            try {
+                while (!shutdown && !isFlushDue()) {
+                    if (dirty.isEmpty()) {
+                        flushDue.await();
+                    } else {
+                        flushDue.awaitNanos(maxDelayNanos - (System.nanoTime() - oldestDirtyAt));
+                    }
+                }
+                if (shutdown) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (!flushQuietly()) {
+                // Disk trouble: back off instead of spinning on the same batch
+                try {
+                    TimeUnit.NANOSECONDS.sleep(maxDelayNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    // Must hold the lock
+    private boolean isFlushDue() {
+        return dirty.size() >= batchSize
+                || (!dirty.isEmpty() && System.nanoTime() - oldestDirtyAt >= maxDelayNanos);
+    }
+    
+    private boolean flushQuietly() {
+        try {
+            flush();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving users: " + e.getMessage());
+            return false;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+package com.heartgame.simulation;
+
+import com.heartgame.model.Hand;
+import com.heartgame.model.Operation;
+import com.heartgame.service.GameEngine;
+
+import java.util.Random;
+
+/**
+ * How a simulated player picks an operation and cards for a dealt hand.
+ *
+ * Each strategy drives the real GameEngine through setOperation and
+ * toggleCardAt, exactly as the UI would; the simulator then checks and
+ * scores whatever the bot selected.
+ */
+public enum BotStrategy {
+    
+    /** Any operation, a random run of two or more cards. */
+    RANDOM {
+        @Override
+        public void play(GameEngine engine, Hand hand, int target, Random random) {
+            int n = hand.size();
+            engine.setOperation(Operation.fromOrdinal(random.nextInt(OPERATIONS)));
+            int picks = n < 2 ? n : 2 + random.nextInt(n - 1);
+            long used = 0L;
+            while (Long.bitCount(used) < picks) {
+                int position = random.nextInt(n);
+                if ((used & (1L << position)) == 0) {
+                    used |= 1L << position;
+                    engine.toggleCardAt(position);
+                }
+            }
+        }
+    },
+    
+    /**
+     * Per operation and starting card, keeps adding whichever card brings the
+     * result closest to the target, and plays the closest line found.
+     */
+    GREEDY {
+        @Override
+        public void play(GameEngine engine, Hand hand, int target, Random random) {
+            int n = hand.size();
+            int[] order = new int[n];
+            int[] bestOrder = new int[n];
+            int bestLength = 0;
+            long bestDistance = Long.MAX_VALUE;
+            Operation bestOperation = Operation.ADD;
+            
+            for (int op = 0; op < OPERATIONS; op++) {
+                Operation operation = Operation.fromOrdinal(op);
+                for (int first = 0; first < n; first++) {
+                    order[0] = first;
+                    long used = 1L << first;
+                    int length = 1;
+                    int result = hand.valueAt(first);
+                    
+                    while (length < n) {
+                        int pick = -1;
+                        int pickResult = 0;
+                        long pickDistance = Long.MAX_VALUE;
+                        for (int i = 0; i < n; i++) {
+                            if ((used & (1L << i)) == 0) {
+                                int next = operation.apply(result, hand.valueAt(i));
+                                long distance = Math.abs((long) next - target);
+                                if (distance < pickDistance) {
+                                    pick = i;
+                                    pickResult = next;
+                                    pickDistance = distance;
+                                }
+                            }
+                        }
+                        // A game needs two cards; after that only take improvements
+                        if (length >= 2 && pickDistance >= Math.abs((long) result - target)) {
+                            break;
+                        }
+                        order[length++] = pick;
+                        used |= 1L << pick;
+                        result = pickResult;
+                    }
+                    
+                    long distance = Math.abs((long) result - target);
+                    if (distance < bestDistance || (distance == bestDistance && length > bestLength)) {
+                        bestDistance = distance;
+                        bestLength = length;
+                        bestOperation = operation;
+                        System.arraycopy(order, 0, bestOrder, 0, length);
+                    }
+                }
+            }
+            
+            engine.setOperation(bestOperation);
+            for (int i = 0; i < bestLength; i++) {
+                engine.toggleCardAt(bestOrder[i]);
+            }
+        }
+    },
+    
+    /**
+     * Searches every card subset, operation and leading card for an exact
+     * solution, preferring ones that use more cards (they score higher).
+     * Falls back to GREEDY when the target is unreachable.
+     */
+    OPTIMAL {
+        @Override
+        public void play(GameEngine engine, Hand hand, int target, Random random) {
+            int n = hand.size();
+            int bestMask = 0;
+            int bestFirst = -1;
+            Operation bestOperation = null;
+            
+            for (int mask = 1; mask < (1 << n); mask++) {
+                int size = Integer.bitCount(mask);
+                if (size < 2 || size <= Integer.bitCount(bestMask)) {
+                    continue;
+                }
+                for (int op = 0; op < OPERATIONS && size > Integer.bitCount(bestMask); op++) {
+                    Operation operation = Operation.fromOrdinal(op);
+                    // Sums and products do not depend on which card leads
+                    boolean commutative = operation == Operation.ADD || operation == Operation.MULTIPLY;
+                    for (int rest = mask; rest != 0; rest &= rest - 1) {
+                        int first = Integer.numberOfTrailingZeros(rest);
+                        if (fold(hand, mask, first, operation) == target) {
+                            bestMask = mask;
+                            bestFirst = first;
+                            bestOperation = operation;
+                            break;
+                        }
+                        if (commutative) {
+                            break;
+                        }
+                    }
+                }
+            }
+            
+            if (bestOperation == null) {
+                GREEDY.play(engine, hand, target, random);
+                return;
+            }
+            engine.setOperation(bestOperation);
+            engine.toggleCardAt(bestFirst);
+            for (int rest = bestMask & ~(1 << bestFirst); rest != 0; rest &= rest - 1) {
+                engine.toggleCardAt(Integer.numberOfTrailingZeros(rest));
+            }
+        }
+    };
+    
+    private static final int OPERATIONS = Operation.values().length;
+    
+    /**
+     * Selects cards and an operation on the engine, which has just started a
+     * game with the given hand.
+     */
+    public abstract void play(GameEngine engine, Hand hand, int target, Random random);
+    
+    // Result of selecting the leading card and then the rest of the mask in order
+    private static int fold(Hand hand, int mask, int first, Operation operation) {
+        int result = hand.valueAt(first);
+        for (int rest = mask & ~(1 << first); rest != 0; rest &= rest - 1) {
+            result = operation.apply(result, hand.valueAt(Integer.numberOfTrailingZeros(rest)));
+        }
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,361 @@
+package com.heartgame.simulation;
+
+import com.heartgame.model.Achievement;
+import com.heartgame.model.Card;
+import com.heartgame.model.Hand;
+import com.heartgame.model.Puzzle;
+import com.heartgame.model.User;
+import com.heartgame.service.GameEngine;
+import com.heartgame.service.GameEventLog;
+import com.heartgame.service.GameEventReplayer;
+import com.heartgame.service.HeartAPIService;
+import com.heartgame.service.PuzzleCache;
+import com.heartgame.service.UserJournal;
+import com.heartgame.service.UserService;
+import com.heartgame.util.LatencyHistogram;
+import com.heartgame.util.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load simulator: bots play complete games through the real
+ * HeartAPIService (dealing locally), GameEngine and UserService.
+ *
+ * Every game goes through four timed phases:
+ *   deal     - fetch a hand, pick a reachable target, start the engine
+ *              (or take a puzzle of a random tier from the puzzle bank)
+ *   evaluate - the bot selects cards and an operation, the answer is checked
+ *   score    - the game is scored and ended
+ *   persist  - stats are updated, journaled and checked for achievements
+ *
+ * Worker threads share one UserService, as concurrent sessions would, so
+ * raising the thread or player count shows where throughput stops scaling.
+ *
+ * Usage: LoadSimulator [--players=N] [--games=N] [--threads=N]
+ *                      [--mode=Timed|Streak|Classic] [--bot=RANDOM|GREEDY|OPTIMAL]
+ *                      [--hand=N] [--data=directory] [--metrics-dump=seconds]
+ *                      [--bank=puzzle-bank-file] [--events=log-directory]
+ *
+ * With --events every action is recorded to a game event log, which is
+ * replayed and checked once the run is over.
+ */
+public class LoadSimulator {
+    
+    /** Time limit of a Timed game, per the README's Timed mode ("Race against the clock (60 seconds)"). */
+    static final int TIMED_LIMIT_SECONDS = 60;
+    
+    private static final long ERROR_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    
+    /**
+     * Outcome of a simulation run.
+     */
+    public static class Report {
+        private final long games;
+        private final long failed;
+        private final long wins;
+        private final long elapsedNanos;
+        private final int players;
+        private final LatencyHistogram deal;
+        private final LatencyHistogram evaluate;
+        private final LatencyHistogram score;
+        private final LatencyHistogram persist;
+        private final Map<String, Long> unlocks;
+        
+        Report(long games, long failed, long wins, long elapsedNanos, int players, LatencyHistogram deal,
+               LatencyHistogram evaluate, LatencyHistogram score, LatencyHistogram persist,
+               Map<String, Long> unlocks) {
+            this.games = games;
+            this.failed = failed;
+            this.wins = wins;
+            this.elapsedNanos = elapsedNanos;
+            this.players = players;
+            this.deal = deal;
+            this.evaluate = evaluate;
+            this.score = score;
+            this.persist = persist;
+            this.unlocks = unlocks;
+        }
+        
+        /** Games played to the end; failed ones are not included. */
+        public long getGames() { return games; }
+        /** Games abandoned because one of their phases threw. */
+        public long getFailedGames() { return failed; }
+        public long getWins() { return wins; }
+        public LatencyHistogram getDealLatency() { return deal; }
+        public LatencyHistogram getEvaluateLatency() { return evaluate; }
+        public LatencyHistogram getScoreLatency() { return score; }
+        public LatencyHistogram getPersistLatency() { return persist; }
+        
+        /**
+         * Achievement id to the number of players who unlocked it during the run.
+         */
+        public Map<String, Long> getUnlocks() { return unlocks; }
+        
+        public double getGamesPerSecond() {
+            return elapsedNanos > 0 ? games * 1e9 / elapsedNanos : 0.0;
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("games=%d failed=%d wins=%d (%.1f%%) elapsed=%.2fs throughput=%.0f games/s%n",
+                    games, failed, wins, games == 0 ? 0.0 : wins * 100.0 / games, elapsedNanos / 1e9,
+                    getGamesPerSecond()));
+            text.append("deal     ").append(deal.summary()).append(System.lineSeparator());
+            text.append("evaluate ").append(evaluate.summary()).append(System.lineSeparator());
+            text.append("score    ").append(score.summary()).append(System.lineSeparator());
+            text.append("persist  ").append(persist.summary()).append(System.lineSeparator());
+            for (Map.Entry<String, Long> unlock : unlocks.entrySet()) {
+                text.append(String.format("unlocked %-14s by %5.1f%% of players (%.2f per 1000 games)%n",
+                        unlock.getKey(), unlock.getValue() * 100.0 / players,
+                        games == 0 ? 0.0 : unlock.getValue() * 1000.0 / games));
+            }
+            return text.toString();
+        }
+    }
+    
+    // Collected by all workers of one run
+    private static final class RunMetrics {
+        final LatencyHistogram deal = new LatencyHistogram();
+        final LatencyHistogram evaluate = new LatencyHistogram();
+        final LatencyHistogram score = new LatencyHistogram();
+        final LatencyHistogram persist = new LatencyHistogram();
+        final Map<String, LongAdder> unlocks = new ConcurrentHashMap<>();
+        final LongAdder completed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder wins = new LongAdder();
+        private final AtomicLong nextErrorReport = new AtomicLong(System.nanoTime());
+        private final LongAdder unreported = new LongAdder();
+        
+        /**
+         * Counts a failed game. At most one error per second is printed, so a
+         * failure that hits every game cannot flood stderr and slow the run.
+         */
+        void failed(Exception e) {
+            failed.increment();
+            long now = System.nanoTime();
+            long due = nextErrorReport.get();
+            if (now - due >= 0 && nextErrorReport.compareAndSet(due, now + ERROR_REPORT_INTERVAL_NANOS)) {
+                long suppressed = unreported.sumThenReset();
+                System.err.println("Error simulating game: " + e.getMessage()
+                        + (suppressed > 0 ? " (" + suppressed + " more since the last report)" : ""));
+            } else {
+                unreported.increment();
+            }
+        }
+    }
+    
+    private final int players;
+    private final int threads;
+    private final String gameMode;
+    private final BotStrategy strategy;
+    private final int handSize;
+    private PuzzleCache puzzles;
+    private GameEventLog eventLog;
+    
+    public LoadSimulator(int players, int threads, String gameMode, BotStrategy strategy, int handSize) {
+        if (players < 1 || threads < 1 || handSize < 2 || handSize > Card.DECK_SIZE) {
+            throw new IllegalArgumentException("Invalid simulation: " + players + " players, "
+                    + threads + " threads, hand of " + handSize);
+        }
+        this.players = players;
+        this.threads = threads;
+        this.gameMode = gameMode;
+        this.strategy = strategy;
+        this.handSize = handSize;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new TreeMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        
+        LoadSimulator simulator = new LoadSimulator(
+                Integer.parseInt(options.getOrDefault("players", "1000")),
+                Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                options.getOrDefault("mode", "Timed"),
+                BotStrategy.valueOf(options.getOrDefault("bot", "GREEDY").toUpperCase()),
+                Integer.parseInt(options.getOrDefault("hand", "5")));
+        long games = Long.parseLong(options.getOrDefault("games", "1000000"));
+        if (options.containsKey("bank")) {
+            simulator.setPuzzles(PuzzleCache.open(Paths.get(options.get("bank"))));
+        }
+        Path data = options.containsKey("data")
+                ? Paths.get(options.get("data"))
+                : Files.createTempDirectory("heartgame-simulation");
+        
+        int dumpSeconds = Integer.parseInt(options.getOrDefault("metrics-dump", "0"));
+        if (dumpSeconds > 0) {
+            Metrics.startPeriodicDump(dumpSeconds, TimeUnit.SECONDS, System.out);
+        }
+        
+        GameEventLog eventLog = null;
+        if (options.containsKey("events")) {
+            eventLog = new GameEventLog(Paths.get(options.get("events")));
+            simulator.setEventLog(eventLog);
+        }
+        
+        System.out.println("Simulating " + games + " games, data in " + data);
+        System.out.print(simulator.run(games, data));
+        // Dumped before the replay, whose engines count their games in the
+        // same engine.games.* counters and would double them
+        if (dumpSeconds > 0) {
+            Metrics.stopPeriodicDump();
+            System.out.print(Metrics.dump());
+        }
+        if (eventLog != null) {
+            eventLog.close();
+            System.out.println("Replaying " + options.get("events"));
+            System.out.print(new GameEventReplayer().replay(Paths.get(options.get("events"))));
+        }
+    }
+    
+    /**
+     * Deals games from the puzzle bank instead of dealing and solving a
+     * hand per game. The bank's hand size replaces the simulator's.
+     */
+    public void setPuzzles(PuzzleCache puzzles) {
+        this.puzzles = puzzles;
+    }
+    
+    /**
+     * Records every bot's actions to the log; run flushes it at the end.
+     */
+    public void setEventLog(GameEventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+    
+    /**
+     * Plays the given number of games with a user store kept in the directory.
+     */
+    public Report run(long games, Path dataDirectory) throws IOException, InterruptedException {
+        Files.createDirectories(dataDirectory);
+        UserService userService = new UserService(dataDirectory, UserJournal.FsyncPolicy.INTERVAL, 1000);
+        HeartAPIService apiService = new HeartAPIService();
+        apiService.setDealLocally(true);
+        
+        User[] users = new User[players];
+        for (int i = 0; i < players; i++) {
+            String username = "bot-" + i;
+            userService.registerUser(username);
+            users[i] = userService.login(username);
+        }
+        
+        RunMetrics metrics = new RunMetrics();
+        AtomicLong nextGame = new AtomicLong();
+        AtomicInteger workerIds = new AtomicInteger();
+        
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "simulator-" + workerIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            workers.execute(() -> {
+                GameEngine engine = new GameEngine();
+                GameEventLog.SessionRecorder recorder = eventLog != null ? eventLog.newRecorder() : null;
+                engine.setRecorder(recorder);
+                Random random = ThreadLocalRandom.current();
+                long game;
+                while ((game = nextGame.getAndIncrement()) < games) {
+                    User user = users[(int) (game % players)];
+                    try {
+                        play(engine, user, random, apiService, userService, metrics);
+                        metrics.completed.increment();
+                    } catch (IOException | RuntimeException e) {
+                        metrics.failed(e);
+                    }
+                }
+                if (recorder != null) {
+                    recorder.close();
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        userService.flush();
+        if (eventLog != null) {
+            eventLog.flush();
+        }
+        long elapsed = System.nanoTime() - start;
+        userService.close();
+        
+        Map<String, Long> unlockCounts = new TreeMap<>();
+        for (Achievement achievement : userService.getAvailableAchievements()) {
+            LongAdder count = metrics.unlocks.get(achievement.getId());
+            unlockCounts.put(achievement.getId(), count == null ? 0L : count.sum());
+        }
+        return new Report(metrics.completed.sum(), metrics.failed.sum(), metrics.wins.sum(), elapsed, players,
+                metrics.deal, metrics.evaluate, metrics.score, metrics.persist, unlockCounts);
+    }
+    
+    private void play(GameEngine engine, User user, Random random, HeartAPIService apiService,
+                      UserService userService, RunMetrics metrics) throws IOException {
+        long phase = System.nanoTime();
+        Hand hand;
+        int target;
+        if (puzzles != null) {
+            Puzzle puzzle = puzzles.next(gameMode, random.nextInt(puzzles.getTierCount()));
+            engine.startGame(user, gameMode, puzzle);
+            hand = puzzle.getHand();
+            target = puzzle.getTargetNumber();
+        } else {
+            List<Card> cards = apiService.fetchCards(handSize);
+            target = apiService.generateTargetNumber(cards);
+            engine.startGame(user, gameMode, target, cards);
+            hand = Hand.of(cards);
+        }
+        phase = lap(metrics.deal, phase);
+        
+        strategy.play(engine, hand, target, random);
+        // Think time is simulated, not slept
+        long timeSeconds = 5 + random.nextInt(90);
+        boolean won = engine.hasValidSelection() && engine.checkAnswer()
+                && (!gameMode.equals("Timed") || timeSeconds <= TIMED_LIMIT_SECONDS);
+        phase = lap(metrics.evaluate, phase);
+        
+        int points = won ? engine.calculateScore(timeSeconds, gameMode) : 0;
+        engine.endGame(won, points);
+        phase = lap(metrics.score, phase);
+        
+        int changedStats = user.updateStats(won, points, timeSeconds);
+        userService.updateUser(user);
+        List<Achievement> unlocked = userService.checkAndUnlockAchievements(user, changedStats);
+        for (int i = 0; i < unlocked.size(); i++) {
+            metrics.unlocks.computeIfAbsent(unlocked.get(i).getId(), id -> new LongAdder()).increment();
+        }
+        lap(metrics.persist, phase);
+        
+        if (won) {
+            metrics.wins.increment();
+        }
+    }
+    
+    private static long lap(LatencyHistogram histogram, long since) {
+        long now = System.nanoTime();
+        histogram.record(now - since);
+        return now;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,172 @@
+package com.heartgame.ui;
+
+import com.heartgame.model.Achievement;
+import com.heartgame.model.Card;
+import com.heartgame.model.User;
+import com.heartgame.service.CardPrefetcher;
+import com.heartgame.service.ExpressionSolver;
+import com.heartgame.service.HeartAPIService;
+import com.heartgame.service.Leaderboard;
+import com.heartgame.service.UserService;
+
+import javax.swing.SwingUtilities;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking view of the services for Swing code (Event-Driven).
+ *
+ * Every call runs on a small pool of I/O threads and returns at once. The
+ * returned future is completed on the event dispatch thread, so callbacks
+ * attached from Swing code with thenAccept and friends run there and may
+ * touch components directly. Calls made before a service has finished
+ * starting are queued behind it.
+ *
+ * Rule of thumb: nothing that reaches the network or the disk is ever
+ * called from the event dispatch thread, only through this class.
+ */
+public class AsyncServices {
+    
+    /** A blocking service call, run off the event dispatch thread. */
+    private interface ServiceCall<S, T> {
+        T apply(S service) throws Exception;
+    }
+    
+    private final CompletableFuture<UserService> users;
+    private final CompletableFuture<HeartAPIService> api;
+    private final CompletableFuture<CardPrefetcher> prefetcher;
+    private final CompletableFuture<ExpressionSolver> hints = CompletableFuture.completedFuture(new ExpressionSolver());
+    private final ExecutorService io;
+    
+    /**
+     * @param users      the user service, possibly still loading
+     * @param api        the API service, possibly still being built
+     * @param prefetcher the card prefetcher, possibly still starting
+     * @param ioThreads  threads for blocking calls
+     */
+    public AsyncServices(CompletableFuture<UserService> users, CompletableFuture<HeartAPIService> api,
+                         CompletableFuture<CardPrefetcher> prefetcher, int ioThreads) {
+        this.users = users;
+        this.api = api;
+        this.prefetcher = prefetcher;
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        this.io = Executors.newFixedThreadPool(ioThreads, runnable -> {
+            Thread thread = new Thread(runnable, "service-io-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public CompletableFuture<User> login(String username) {
+        return call(users, service -> service.login(username));
+    }
+    
+    public CompletableFuture<Boolean> register(String username) {
+        return call(users, service -> service.registerUser(username));
+    }
+    
+    /**
+     * Stores a finished game's stats and unlocks the achievements they earn.
+     *
+     * @param changedStats the mask returned by User.updateStats
+     * @return the newly unlocked achievements
+     */
+    public CompletableFuture<List<Achievement>> recordGame(User user, int changedStats) {
+        return call(users, service -> {
+            service.updateUser(user);
+            return service.checkAndUnlockAchievements(user, changedStats);
+        });
+    }
+    
+    /**
+     * Writes a full snapshot of the user store.
+     */
+    public CompletableFuture<Void> save() {
+        return call(users, service -> {
+            service.saveSnapshot();
+            return null;
+        });
+    }
+    
+    public CompletableFuture<List<Leaderboard.Entry>> leaderboard(Leaderboard.Metric metric, int from, int count) {
+        return call(users, service -> service.getLeaderboard().page(metric, from, count));
+    }
+    
+    /**
+     * The next pre-dealt hand from the prefetcher.
+     */
+    public CompletableFuture<List<Card>> nextHand() {
+        CompletableFuture<List<Card>> result = new CompletableFuture<>();
+        prefetcher.thenCompose(CardPrefetcher::nextHand).whenComplete((hand, error) ->
+                SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        result.completeExceptionally(unwrap(error));
+                    } else {
+                        result.complete(hand);
+                    }
+                }));
+        return result;
+    }
+    
+    /**
+     * Fetches cards straight from the Heart API, e.g. for a hand size the
+     * prefetcher does not deal.
+     */
+    public CompletableFuture<List<Card>> fetchCards(int count) {
+        return call(api, service -> service.fetchCards(count));
+    }
+    
+    public CompletableFuture<Integer> generateTarget(List<Card> cards) {
+        return call(api, service -> service.generateTargetNumber(cards));
+    }
+    
+    /**
+     * An expression over the cards that reaches the target, for "show hint".
+     * Completes with null if no expression does.
+     */
+    public CompletableFuture<ExpressionSolver.Hint> hint(List<Card> cards, int target) {
+        return call(hints, solver -> solver.hint(cards, target));
+    }
+    
+    /**
+     * Stops the I/O threads. Calls already running still complete.
+     */
+    public void shutdown() {
+        io.shutdown();
+    }
+    
+    private <S, T> CompletableFuture<T> call(CompletableFuture<S> service, ServiceCall<S, T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        service.whenCompleteAsync((ready, unavailable) -> {
+            T value = null;
+            Throwable error = unavailable;
+            if (error == null) {
+                try {
+                    value = call.apply(ready);
+                } catch (Exception e) {
+                    error = e;
+                }
+            }
+            
+            T delivered = value;
+            Throwable failure = error == null ? null : unwrap(error);
+            SwingUtilities.invokeLater(() -> {
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(delivered);
+                }
+            });
+        }, io);
+        return result;
+    }
+    
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+package com.heartgame.ui;
+
+import com.heartgame.util.LatencyHistogram;
+import com.heartgame.util.Metrics;
+
+import javax.swing.SwingUtilities;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long events wait for the event dispatch thread.
+ *
+ * A watchdog thread posts a probe event every interval and records how long
+ * it takes to run. That is the latency any click or repaint would have
+ * seen at that moment. Every probe feeds ui.edt.latency. Probes slower than
+ * the stall threshold also feed ui.edt.stalls. While a probe is overdue
+ * the watchdog captures the dispatch thread's stack once and logs it, so a
+ * stall names the code that caused it.
+ */
+public class EdtWatchdog {
+    
+    private static final Metrics.Timer LATENCY = Metrics.timer("ui.edt.latency");
+    private static final Metrics.Timer STALLS = Metrics.timer("ui.edt.stalls");
+    
+    private final long intervalNanos;
+    private final long stallNanos;
+    private final PrintStream log;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram stalls = new LatencyHistogram();
+    private final Runnable probe = this::probe;
+    
+    private ScheduledExecutorService timer;
+    private volatile long probePostedAt;
+    private volatile boolean stallReported;
+    private volatile Thread dispatchThread;
+    
+    /**
+     * @param interval       time between probes
+     * @param stallThreshold probe latency reported as a stall
+     * @param log            receives stall reports
+     */
+    public EdtWatchdog(long interval, long stallThreshold, TimeUnit unit, PrintStream log) {
+        this.intervalNanos = unit.toNanos(interval);
+        this.stallNanos = unit.toNanos(stallThreshold);
+        this.log = log;
+    }
+    
+    public synchronized void start() {
+        if (timer != null) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edt-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Queued ahead of anything the caller posts next, so even a slow
+        // first event (e.g. building the login screen) is logged with a stack
+        if (SwingUtilities.isEventDispatchThread()) {
+            dispatchThread = Thread.currentThread();
+        } else {
+            SwingUtilities.invokeLater(() -> dispatchThread = Thread.currentThread());
+        }
+        timer.scheduleWithFixedDelay(this::tick, 0, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+    
+    // On the watchdog thread
+    private void tick() {
+        long posted = probePostedAt;
+        long now = System.nanoTime();
+        if (posted == 0L) {
+            stallReported = false;
+            probePostedAt = now;
+            SwingUtilities.invokeLater(probe);
+        } else if (now - posted >= stallNanos && !stallReported) {
+            stallReported = true;
+            reportStall(now - posted);
+        }
+    }
+    
+    // On the event dispatch thread
+    private void probe() {
+        long waited = System.nanoTime() - probePostedAt;
+        dispatchThread = Thread.currentThread();
+        latency.record(waited);
+        LATENCY.record(waited);
+        if (waited >= stallNanos) {
+            stalls.record(waited);
+            STALLS.record(waited);
+        }
+        probePostedAt = 0L;
+    }
+    
+    private void reportStall(long nanos) {
+        Thread thread = dispatchThread;
+        if (thread == null || !thread.isAlive()) {
+            thread = findDispatchThread();
+        }
+        StringBuilder report = new StringBuilder()
+                .append("Event dispatch thread stalled for ")
+                .append(TimeUnit.NANOSECONDS.toMillis(nanos)).append(" ms");
+        if (thread != null) {
+            for (StackTraceElement frame : thread.getStackTrace()) {
+                report.append(System.lineSeparator()).append("\tat ").append(frame);
+            }
+        }
+        log.println(report);
+    }
+    
+    // AWT names its dispatch threads AWT-EventQueue-N; used until a probe or
+    // the capture posted by start has run on the current one
+    private static Thread findDispatchThread() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("AWT-EventQueue") && thread.isAlive()) {
+                return thread;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Latency of every probe.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+    
+    /**
+     * Latency of the probes over the stall threshold.
+     */
+    public LatencyHistogram getStalls() {
+        return stalls;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.heartgame.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over 32-bit hashes.
+ *
+ * Answers "definitely absent" or "maybe present" for a set of keys in a few
+ * bits per key, so a miss can be rejected without touching the real store.
+ * The k bit positions come from double hashing the key's hash, which is as
+ * good as k independent hashes for this purpose. Callers supply a well
+ * mixed hash; keys whose hashes collide are indistinguishable. Adding is
+ * safe from many threads at once and keys can never be removed.
+ */
+public class BloomFilter {
+    
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    
+    /**
+     * Sizes the filter for an expected number of keys at a target false
+     * positive rate. More keys than expected raise the rate gradually.
+     */
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        long keys = Math.max(1, expectedKeys);
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / keys * ln2));
+    }
+    
+    public void add(int hash) {
+        long h2 = secondHash(hash);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+    
+    /**
+     * False if the hash was never added; true if it probably was.
+     */
+    public boolean mightContain(int hash) {
+        long h2 = secondHash(hash);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public int getHashCount() {
+        return hashCount;
+    }
+    
+    public long getBitCount() {
+        return bitCount;
+    }
+    
+    private static long secondHash(int hash) {
+        long h = (hash & 0xFFFFFFFFL) * 0xC2B2AE3D27D4EB4FL;
+        return (h ^ (h >>> 29)) | 1;
+    }
+}
\ No newline at end of file
@@ -1,7 +1,54 @@
 package com.heartgame.util;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 
+/**
+ * File I/O utility methods (Interoperability - File I/O).
+ */
 public class FileManager {
-    // File I/O utility methods
+    
+    /**
+     * Reads a whole text file as UTF-8.
+     */
+    public static String readFile(String fileName) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(fileName)), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Writes a whole text file as UTF-8, replacing it atomically so a crash
+     * mid-write never leaves a truncated file behind.
+     */
+    public static void writeFile(String fileName, String content) throws IOException {
+        writeFileAtomically(Paths.get(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Writes to a temporary sibling, forces it to disk and renames it over
+     * the target.
+     */
+    public static void writeFileAtomically(Path target, byte[] content) throws IOException {
+        writeFileAtomically(target, content, content.length);
+    }
+    
+    /**
+     * Writes the first length bytes of content atomically, e.g. from a
+     * buffer that was sized generously while encoding.
+     */
+    public static void writeFileAtomically(Path target, byte[] content, int length) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            out.write(content, 0, length);
+            out.getFD().sync();
+        }
+        
+        try {
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 }
\ No newline at end of file
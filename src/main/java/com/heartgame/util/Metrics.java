@@ -0,0 +1,241 @@
+package com.heartgame.util;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide registry of counters and latency timers.
+ *
+ * Counters are LongAdders and timers are LatencyHistograms, so recording
+ * never locks or allocates. Services look their metrics up once into static
+ * fields. Every metric is published over JMX under the "com.heartgame"
+ * domain (e.g. in JConsole), and dump() renders them all as text, which
+ * startPeriodicDump can print on a schedule. Publishing happens on a
+ * background thread, so the first lookup never waits for the platform
+ * MBean server to start.
+ *
+ * Recording can be switched off with setEnabled(false) or the system property
+ * heartgame.metrics.disabled, e.g. to measure the instrumentation's overhead.
+ */
+public final class Metrics {
+    
+    /** JMX view of a counter. */
+    public interface CounterMBean {
+        long getCount();
+    }
+    
+    /** JMX view of a timer, in milliseconds. */
+    public interface TimerMBean {
+        long getCount();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP90Millis();
+        double getP99Millis();
+        double getMaxMillis();
+        void reset();
+    }
+    
+    /**
+     * Monotonic event counter.
+     */
+    public static final class Counter implements CounterMBean {
+        private final LongAdder count = new LongAdder();
+        
+        public void increment() {
+            if (enabled) {
+                count.increment();
+            }
+        }
+        
+        public void add(long amount) {
+            if (enabled) {
+                count.add(amount);
+            }
+        }
+        
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+    }
+    
+    /**
+     * Latency timer. Typical use:
+     * <pre>
+     *   long start = TIMER.start();
+     *   ...
+     *   TIMER.stop(start);
+     * </pre>
+     */
+    public static final class Timer implements TimerMBean {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        
+        /** Start timestamp, or 0 while recording is disabled. */
+        public long start() {
+            return enabled ? System.nanoTime() : 0L;
+        }
+        
+        public void stop(long start) {
+            if (start != 0L) {
+                histogram.recordSince(start);
+            }
+        }
+        
+        /**
+         * Records a duration measured elsewhere, e.g. from JVM start.
+         */
+        public void record(long nanos) {
+            if (enabled) {
+                histogram.record(nanos);
+            }
+        }
+        
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+        
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+        
+        @Override
+        public double getMeanMillis() {
+            return histogram.getMeanNanos() / 1e6;
+        }
+        
+        @Override
+        public double getP50Millis() {
+            return histogram.getPercentileNanos(50) / 1e6;
+        }
+        
+        @Override
+        public double getP90Millis() {
+            return histogram.getPercentileNanos(90) / 1e6;
+        }
+        
+        @Override
+        public double getP99Millis() {
+            return histogram.getPercentileNanos(99) / 1e6;
+        }
+        
+        @Override
+        public double getMaxMillis() {
+            return histogram.getMaxNanos() / 1e6;
+        }
+        
+        @Override
+        public void reset() {
+            histogram.reset();
+        }
+    }
+    
+    private static final String DOMAIN = "com.heartgame";
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    
+    private static volatile boolean enabled = !Boolean.getBoolean("heartgame.metrics.disabled");
+    private static final ExecutorService PUBLISHER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-jmx");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static ScheduledExecutorService dumper;
+    private static ScheduledFuture<?> dump;
+    
+    private Metrics() {
+    }
+    
+    /**
+     * The counter with this name, created and published on first use.
+     */
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> publish("Counter", key, new Counter()));
+    }
+    
+    /**
+     * The timer with this name, created and published on first use.
+     */
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, key -> publish("Timer", key, new Timer()));
+    }
+    
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+    
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    // Counter and Timer are standard MBeans through their nested *MBean interfaces
+    private static <T> T publish(String type, String name, T metric) {
+        PUBLISHER.execute(() -> {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+                if (!server.isRegistered(objectName)) {
+                    server.registerMBean(metric, objectName);
+                }
+            } catch (JMException | RuntimeException e) {
+                // Metrics still work without JMX
+                System.err.println("Error publishing metric " + name + ": " + e.getMessage());
+            }
+        });
+        return metric;
+    }
+    
+    /**
+     * All metrics as text, one per line, sorted by name.
+     */
+    public static String dump() {
+        Map<String, String> lines = new TreeMap<>();
+        for (Map.Entry<String, Counter> counter : COUNTERS.entrySet()) {
+            lines.put(counter.getKey(), "count=" + counter.getValue().getCount());
+        }
+        for (Map.Entry<String, Timer> timer : TIMERS.entrySet()) {
+            lines.put(timer.getKey(), timer.getValue().histogram.summary());
+        }
+        
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> line : lines.entrySet()) {
+            text.append(String.format("%-24s %s%n", line.getKey(), line.getValue()));
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Prints dump() to the stream every period until stopPeriodicDump.
+     */
+    public static synchronized void startPeriodicDump(long period, TimeUnit unit, PrintStream out) {
+        stopPeriodicDump();
+        if (dumper == null) {
+            dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        dump = dumper.scheduleAtFixedRate(() -> out.print(dump()), period, period, unit);
+    }
+    
+    public static synchronized void stopPeriodicDump() {
+        if (dump != null) {
+            dump.cancel(false);
+            dump = null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package com.heartgame.controller;
+
+import com.heartgame.model.Hand;
+import com.heartgame.model.User;
+import com.heartgame.service.SessionRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GameControllerTest {
+    
+    private SessionRegistry registry;
+    private GameController controller;
+    
+    @Before
+    public void setUp() {
+        registry = new SessionRegistry(300, TimeUnit.MILLISECONDS, 10, TimeUnit.MILLISECONDS, 64);
+        controller = new GameController(null, 2, registry);
+    }
+    
+    @After
+    public void tearDown() {
+        controller.shutdown();
+    }
+    
+    @Test
+    public void submitScoresOnceAndIsNotEvictedLater() throws Exception {
+        User user = new User("alice");
+        Hand hand = Hand.deal(new Random(1), 5);
+        int target = hand.valueAt(0) + hand.valueAt(1);
+        String sessionId = controller.start(user, "Classic", target, hand).get(5, TimeUnit.SECONDS).getSessionId();
+        
+        controller.toggle(sessionId, 0).get(5, TimeUnit.SECONDS);
+        controller.toggle(sessionId, 1).get(5, TimeUnit.SECONDS);
+        GameController.GameStatus status = controller.submit(sessionId).get(5, TimeUnit.SECONDS);
+        
+        assertTrue(status.isFinished());
+        assertTrue(status.isWon());
+        Thread.sleep(600);
+        assertEquals(1, user.getTotalGamesPlayed());
+        assertEquals(1, user.getGamesWon());
+        assertEquals(0, registry.getEvictedSessions());
+        assertEquals(0, controller.getActiveSessions());
+    }
+    
+    @Test
+    public void idleSessionIsEndedAsLossByItsShard() throws Exception {
+        User user = new User("bob");
+        String sessionId = controller.start(user, "Classic", 10, Hand.deal(new Random(2), 5))
+                .get(5, TimeUnit.SECONDS).getSessionId();
+        
+        awaitTrue(() -> controller.getActiveSessions() == 0);
+        assertEquals(1, registry.getEvictedSessions());
+        assertEquals(1, user.getTotalGamesPlayed());
+        assertEquals(1, user.getGamesLost());
+        
+        try {
+            controller.submit(sessionId).get(5, TimeUnit.SECONDS);
+            fail("expired session was scored");
+        } catch (ExecutionException expected) {
+            // Already ended as a loss
+        }
+        assertEquals(1, user.getTotalGamesPlayed());
+    }
+    
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("condition not met within 5 seconds");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
\ No newline at end of file
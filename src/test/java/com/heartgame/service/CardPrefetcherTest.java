@@ -0,0 +1,148 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Card;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CardPrefetcherTest {
+    
+    private static final int HAND_SIZE = 5;
+    
+    private StubHeartApi api;
+    private CardPrefetcher prefetcher;
+    
+    @Before
+    public void setUp() throws Exception {
+        api = new StubHeartApi();
+    }
+    
+    @After
+    public void tearDown() {
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
+        api.close();
+    }
+    
+    private CardPrefetcher prefetcher(HeartAPIService service, int capacity, int lowWaterMark) {
+        prefetcher = new CardPrefetcher(service, HAND_SIZE, capacity, lowWaterMark);
+        return prefetcher;
+    }
+    
+    private HeartAPIService service(Duration deadline) {
+        return new HeartAPIService(api.baseUrl(), StubHeartApi.transport(deadline, null));
+    }
+    
+    @Test
+    public void splitsOneBatchedRequestIntoHands() throws Exception {
+        CardPrefetcher prefetcher = prefetcher(service(Duration.ofSeconds(5)), 10, 3);
+        prefetcher.start();
+        awaitTrue(() -> prefetcher.bufferedHands() == 10);
+        
+        assertEquals(Arrays.asList(10 * HAND_SIZE), api.requests());
+        for (int hand = 0; hand < 10; hand++) {
+            List<Card> cards = prefetcher.nextHand().get(5, TimeUnit.SECONDS);
+            assertEquals(HAND_SIZE, cards.size());
+            for (int i = 0; i < HAND_SIZE; i++) {
+                assertEquals(Card.ofDeckIndex(hand * HAND_SIZE + i), cards.get(i));
+            }
+        }
+    }
+    
+    @Test
+    public void capsBatchesAtOneDeck() throws Exception {
+        CardPrefetcher prefetcher = prefetcher(service(Duration.ofSeconds(5)), 25, 0);
+        prefetcher.start();
+        awaitTrue(() -> prefetcher.bufferedHands() == 25);
+        
+        // 52 / 5 = 10 hands per request
+        assertEquals(Arrays.asList(50, 50, 25), api.requests());
+    }
+    
+    @Test
+    public void refillsOnlyBelowLowWaterMark() throws Exception {
+        CardPrefetcher prefetcher = prefetcher(service(Duration.ofSeconds(5)), 10, 3);
+        prefetcher.start();
+        awaitTrue(() -> prefetcher.bufferedHands() == 10);
+        
+        for (int i = 0; i < 7; i++) {
+            prefetcher.nextHand().get(5, TimeUnit.SECONDS);
+        }
+        Thread.sleep(100);
+        assertEquals(1, api.requests().size());
+        assertEquals(3, prefetcher.bufferedHands());
+        
+        prefetcher.nextHand().get(5, TimeUnit.SECONDS);
+        awaitTrue(() -> prefetcher.bufferedHands() == 10);
+        assertEquals(Arrays.asList(50, 40), api.requests());
+    }
+    
+    @Test
+    public void dealsLocallyOnBadResponse() throws Exception {
+        api.setResponder(StubHeartApi.body(200, "{\"cards\": 5}"));
+        CardPrefetcher prefetcher = prefetcher(service(Duration.ofSeconds(5)), 4, 1);
+        
+        assertValidHand(prefetcher.nextHand().get(5, TimeUnit.SECONDS));
+        awaitTrue(() -> prefetcher.bufferedHands() == 4);
+    }
+    
+    @Test
+    public void dealsLocallyOnErrorStatus() throws Exception {
+        api.setResponder(StubHeartApi.body(503, "unavailable"));
+        CardPrefetcher prefetcher = prefetcher(service(Duration.ofSeconds(5)), 4, 1);
+        
+        assertValidHand(prefetcher.nextHand().get(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void dealsLocallyOnSlowResponse() throws Exception {
+        api.setResponder(StubHeartApi.after(3_000, StubHeartApi::deal));
+        CardPrefetcher prefetcher = prefetcher(service(Duration.ofMillis(200)), 4, 1);
+        
+        long start = System.nanoTime();
+        assertValidHand(prefetcher.nextHand().get(5, TimeUnit.SECONDS));
+        assertTrue("waited for the slow response", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+    
+    @Test
+    public void keepsRefillingAfterUnexpectedFailure() throws Exception {
+        HeartAPIService failing = new HeartAPIService(api.baseUrl(), StubHeartApi.transport(Duration.ofSeconds(5), null)) {
+            @Override
+            public List<Card> fetchCards(int numberOfCards) {
+                throw new IllegalStateException("unexpected response shape");
+            }
+        };
+        CardPrefetcher prefetcher = prefetcher(failing, 2, 1);
+        
+        for (int i = 0; i < 5; i++) {
+            assertValidHand(prefetcher.nextHand().get(5, TimeUnit.SECONDS));
+        }
+    }
+    
+    private static void assertValidHand(List<Card> cards) {
+        assertEquals(HAND_SIZE, cards.size());
+        assertEquals(HAND_SIZE, new HashSet<>(cards).size());
+    }
+    
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("condition not met within 5 seconds");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Card;
+import com.heartgame.model.Hand;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CardStreamParserTest {
+    
+    private static Hand parse(String json) throws IOException {
+        return CardStreamParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), 2);
+    }
+    
+    @Test
+    public void parsesCardsAndSkipsUnknownFields() throws Exception {
+        Hand hand = parse("{\"success\": true, \"cards\": [{\"suit\": \"hearts\", \"rank\": \"A\", \"image\": \"x\"},"
+                + " {\"code\": 1, \"suit\": \"spades\", \"rank\": \"10\"}, {\"suit\": \"clubs\", \"rank\": \"K\"}]}");
+        assertEquals(3, hand.size());
+        assertEquals(Card.of("hearts", "A"), hand.get(0));
+        assertEquals(Card.of("spades", "10"), hand.get(1));
+        assertEquals(Card.of("clubs", "K"), hand.get(2));
+    }
+    
+    @Test
+    public void rejectsMalformedAndMisshapenResponses() {
+        String[] responses = {
+            "", "[]", "{}", "{\"cards\": 5}", "{\"cards\": [1]}", "{\"cards\": [\"AH\"]}",
+            "{\"cards\": [{\"suit\": \"hearts\"}]}", "{\"cards\": [{\"suit\": \"stars\", \"rank\": \"A\"}]}",
+            "{\"cards\": [{\"suit\": \"hearts\", \"rank\": \"1\"}]}", "{\"cards\": [", "not json"
+        };
+        for (String response : responses) {
+            try {
+                parse(response);
+                fail("accepted " + response);
+            } catch (IOException expected) {
+                // Every bad response is reported the same way
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+package com.heartgame.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CardTransportTest {
+    
+    private static final HttpResponse.BodyHandler<String> BODY = HttpResponse.BodyHandlers.ofString();
+    
+    private StubHeartApi api;
+    private URI uri;
+    
+    @Before
+    public void setUp() throws Exception {
+        api = new StubHeartApi();
+        uri = URI.create(api.baseUrl() + "?number=5&format=json");
+    }
+    
+    @After
+    public void tearDown() {
+        api.close();
+    }
+    
+    @Test
+    public void retriesFailedAttempts() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(10, 10, 1.0, 1.0, Long.MAX_VALUE, Long.MAX_VALUE);
+        CardTransport transport = new CardTransport(Duration.ofSeconds(5), 3, Duration.ofMillis(1), null, breaker);
+        api.script(StubHeartApi.body(503, "busy"), StubHeartApi.body(500, "broken"));
+        
+        assertTrue(transport.get(uri, BODY).contains("\"cards\""));
+        assertEquals(3, api.requests().size());
+        assertEquals(3, transport.getLatency().getCount());
+        assertEquals(2.0 / 3.0, breaker.getFailureRate(), 1e-9);
+    }
+    
+    @Test
+    public void doesNotHedgeAnsweredRequest() throws Exception {
+        CardTransport transport = StubHeartApi.transport(Duration.ofSeconds(5), Duration.ofMillis(200));
+        
+        transport.get(uri, BODY);
+        Thread.sleep(400);
+        assertEquals(1, api.requests().size());
+        assertEquals(1, transport.getLatency().getCount());
+    }
+    
+    @Test
+    public void doesNotHedgeFailedRequest() throws Exception {
+        CardTransport transport = StubHeartApi.transport(Duration.ofSeconds(5), Duration.ofMillis(200));
+        api.setResponder(StubHeartApi.body(503, "busy"));
+        
+        try {
+            transport.get(uri, BODY);
+            fail("503 accepted");
+        } catch (IOException expected) {
+            // The only attempt failed
+        }
+        Thread.sleep(400);
+        assertEquals(1, api.requests().size());
+    }
+    
+    @Test
+    public void hedgeAnswersForSlowPrimary() throws Exception {
+        CardTransport transport = StubHeartApi.transport(Duration.ofSeconds(5), Duration.ofMillis(100));
+        api.script(StubHeartApi.after(1_000, StubHeartApi::deal));
+        
+        long start = System.nanoTime();
+        assertTrue(transport.get(uri, BODY).contains("\"cards\""));
+        assertTrue("waited for the slow primary", System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(800));
+        assertEquals(2, api.requests().size());
+        
+        // The losing primary is still recorded once it answers
+        awaitTrue(() -> transport.getLatency().getCount() == 2);
+        assertEquals(0.0, transport.getBreaker().getFailureRate(), 0.0);
+    }
+    
+    @Test
+    public void failedHedgeDoesNotBeatHealthyPrimary() throws Exception {
+        CardTransport transport = StubHeartApi.transport(Duration.ofSeconds(5), Duration.ofMillis(100));
+        api.script(StubHeartApi.after(500, StubHeartApi::deal), StubHeartApi.body(503, "busy"));
+        
+        assertTrue(transport.get(uri, BODY).contains("\"cards\""));
+        assertEquals(2, api.requests().size());
+        assertEquals(2, transport.getLatency().getCount());
+        assertEquals(0.5, transport.getBreaker().getFailureRate(), 1e-9);
+    }
+    
+    @Test
+    public void timeoutCancelsPrimaryAndHedge() throws Exception {
+        CardTransport transport = StubHeartApi.transport(Duration.ofMillis(400), Duration.ofMillis(100));
+        api.setResponder(StubHeartApi.after(3_000, StubHeartApi::deal));
+        
+        long start = System.nanoTime();
+        try {
+            transport.get(uri, BODY);
+            fail("slow response accepted");
+        } catch (IOException expected) {
+            // Deadline passed
+        }
+        assertTrue("waited past the deadline", System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(2_000));
+        assertEquals(2, api.requests().size());
+        awaitTrue(() -> transport.getLatency().getCount() == 2);
+        assertEquals(1.0, transport.getBreaker().getFailureRate(), 0.0);
+    }
+    
+    @Test
+    public void openBreakerFailsFast() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(4, 2, 0.5, 1.0, Long.MAX_VALUE, TimeUnit.MINUTES.toNanos(1));
+        CardTransport transport = new CardTransport(Duration.ofSeconds(5), 1, Duration.ofMillis(1), null, breaker);
+        api.setResponder(StubHeartApi.body(503, "busy"));
+        
+        for (int i = 0; i < 2; i++) {
+            try {
+                transport.get(uri, BODY);
+                fail("503 accepted");
+            } catch (IOException expected) {
+                // Counted by the breaker
+            }
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        try {
+            transport.get(uri, BODY);
+            fail("call went through an open breaker");
+        } catch (CardTransport.CircuitOpenException expected) {
+            // Failed fast
+        }
+        assertEquals(2, api.requests().size());
+    }
+    
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("condition not met within 5 seconds");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,244 @@
+package com.heartgame.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExpressionSolverTest {
+    
+    private static final int BOUND = ExpressionSolver.DEFAULT_VALUE_BOUND;
+    
+    private final ExpressionSolver solver = new ExpressionSolver();
+    
+    /**
+     * Small hands, with repeated values and hands whose largest targets need
+     * every card.
+     */
+    private static List<int[]> hands() {
+        List<int[]> hands = new ArrayList<>(Arrays.asList(
+                new int[] {3, 4}, new int[] {1, 1}, new int[] {7, 7, 7}, new int[] {13, 13, 13},
+                new int[] {1, 1, 1, 1}, new int[] {2, 2, 3, 3}, new int[] {1, 5, 5, 13, 13},
+                new int[] {12, 12, 12, 12, 12}, new int[] {1, 2, 3, 4, 5, 6}));
+        Random random = new Random(11);
+        for (int i = 0; i < 20; i++) {
+            int[] hand = new int[2 + random.nextInt(4)];
+            for (int j = 0; j < hand.length; j++) {
+                hand[j] = 1 + random.nextInt(13);
+            }
+            hands.add(hand);
+        }
+        return hands;
+    }
+    
+    @Test
+    public void reachableMatchesBruteForce() {
+        for (int[] hand : hands()) {
+            int[] minCards = bruteForce(hand);
+            List<Integer> expected = new ArrayList<>();
+            for (int value = 1; value <= BOUND; value++) {
+                if (minCards[value] > 0) {
+                    expected.add(value);
+                }
+            }
+            int[] reachable = solver.reachable(hand, hand.length);
+            assertArrayEquals(Arrays.toString(hand), expected.stream().mapToInt(i -> i).toArray(), reachable);
+        }
+    }
+    
+    @Test
+    public void hintsEvaluateToTheTargetWithFewestCards() {
+        for (int[] hand : hands()) {
+            int[] minCards = bruteForce(hand);
+            for (int target = 1; target <= BOUND; target++) {
+                ExpressionSolver.Hint hint = solver.hint(hand, hand.length, target);
+                String context = Arrays.toString(hand) + " -> " + target;
+                if (minCards[target] == 0) {
+                    assertNull(context + " gave " + hint, hint);
+                    continue;
+                }
+                assertNotNull(context, hint);
+                assertEquals(context, target, hint.getTarget());
+                assertEquals(context + " via " + hint, minCards[target], hint.getCardCount());
+                
+                Evaluator evaluator = new Evaluator(hint.getExpression());
+                assertEquals(context + " via " + hint, target, evaluator.evaluate());
+                List<Integer> used = new ArrayList<>();
+                for (int i = 0; i < hand.length; i++) {
+                    if ((hint.getCardMask() & 1 << i) != 0) {
+                        used.add(hand[i]);
+                    }
+                }
+                used.sort(null);
+                evaluator.numbers.sort(null);
+                assertEquals(context + " via " + hint, used, evaluator.numbers);
+            }
+        }
+    }
+    
+    @Test
+    public void fullHandHintUsesEveryCard() {
+        ExpressionSolver.Hint hint = solver.hint(new int[] {1, 1, 1, 1}, 4, 4);
+        assertEquals(0b1111, hint.getCardMask());
+        assertEquals(4, new Evaluator(hint.getExpression()).evaluate());
+        
+        hint = solver.hint(new int[] {13, 13, 13}, 3, 39);
+        assertEquals(0b111, hint.getCardMask());
+        assertEquals(39, new Evaluator(hint.getExpression()).evaluate());
+        
+        assertNull(solver.hint(new int[] {5}, 1, 5));
+        assertNull(solver.hint(new int[] {5, 3}, 2, 0));
+        assertNull(solver.hint(new int[] {5, 3}, 2, BOUND + 1));
+    }
+    
+    /**
+     * Combines any two remaining values until one is left, recording every
+     * value produced and the fewest cards that produced it (0 if none).
+     */
+    private static int[] bruteForce(int[] hand) {
+        int[] minCards = new int[BOUND + 1];
+        int[] cards = new int[hand.length];
+        Arrays.fill(cards, 1);
+        reduce(hand.clone(), cards, minCards, new HashSet<>());
+        return minCards;
+    }
+    
+    private static void reduce(int[] values, int[] cards, int[] minCards, Set<String> seen) {
+        if (values.length < 2 || !seen.add(stateKey(values, cards))) {
+            return;
+        }
+        for (int i = 0; i < values.length; i++) {
+            for (int j = 0; j < values.length; j++) {
+                if (i == j) {
+                    continue;
+                }
+                int a = values[i];
+                int b = values[j];
+                int used = cards[i] + cards[j];
+                long[] results = {(long) a + b, (long) a - b, (long) a * b, a % b == 0 ? a / b : 0};
+                for (long result : results) {
+                    if (result < 1 || result > BOUND) {
+                        continue;
+                    }
+                    int value = (int) result;
+                    if (minCards[value] == 0 || used < minCards[value]) {
+                        minCards[value] = used;
+                    }
+                    int[] nextValues = new int[values.length - 1];
+                    int[] nextCards = new int[values.length - 1];
+                    nextValues[0] = value;
+                    nextCards[0] = used;
+                    for (int k = 0, next = 1; k < values.length; k++) {
+                        if (k != i && k != j) {
+                            nextValues[next] = values[k];
+                            nextCards[next++] = cards[k];
+                        }
+                    }
+                    reduce(nextValues, nextCards, minCards, seen);
+                }
+            }
+        }
+    }
+    
+    private static String stateKey(int[] values, int[] cards) {
+        long[] pairs = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            pairs[i] = (long) values[i] << 8 | cards[i];
+        }
+        Arrays.sort(pairs);
+        return Arrays.toString(pairs);
+    }
+    
+    /**
+     * Integer + - * / with parentheses and the usual precedence. Fails on an
+     * inexact quotient or a step that is not positive. Hints leave out
+     * parentheses the precedence makes redundant, so a step here may be larger
+     * than any step of the solver's tree; only the result is held to the bound.
+     */
+    private static final class Evaluator {
+        final String text;
+        final List<Integer> numbers = new ArrayList<>();
+        int position;
+        
+        Evaluator(String text) {
+            this.text = text;
+        }
+        
+        int evaluate() {
+            int value = sum();
+            skipSpaces();
+            assertEquals("trailing input in " + text, text.length(), position);
+            assertTrue("result " + value + " out of range in " + text, value <= BOUND);
+            return value;
+        }
+        
+        private int sum() {
+            int value = product();
+            while (peek() == '+' || peek() == '-') {
+                char operator = text.charAt(position++);
+                int right = product();
+                value = checked(operator == '+' ? value + right : value - right);
+            }
+            return value;
+        }
+        
+        private int product() {
+            int value = operand();
+            while (peek() == '*' || peek() == '/') {
+                char operator = text.charAt(position++);
+                int right = operand();
+                if (operator == '/') {
+                    assertEquals("inexact division in " + text, 0, value % right);
+                    value = checked(value / right);
+                } else {
+                    value = checked(value * right);
+                }
+            }
+            return value;
+        }
+        
+        private int operand() {
+            if (peek() == '(') {
+                position++;
+                int value = sum();
+                assertEquals("unbalanced " + text, ')', peek());
+                position++;
+                return value;
+            }
+            int start = position;
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+            assertTrue("expected a number at " + start + " in " + text, position > start);
+            int number = Integer.parseInt(text.substring(start, position));
+            numbers.add(number);
+            return number;
+        }
+        
+        private int checked(int value) {
+            assertTrue("step to " + value + " in " + text, value >= 1);
+            return value;
+        }
+        
+        private char peek() {
+            skipSpaces();
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+        
+        private void skipSpaces() {
+            while (position < text.length() && text.charAt(position) == ' ') {
+                position++;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Card;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HeartAPIServiceTest {
+    
+    private StubHeartApi api;
+    private HeartAPIService service;
+    
+    @Before
+    public void setUp() throws Exception {
+        api = new StubHeartApi();
+        service = new HeartAPIService(api.baseUrl(), StubHeartApi.transport(Duration.ofSeconds(5), null));
+    }
+    
+    @After
+    public void tearDown() {
+        api.close();
+    }
+    
+    @Test
+    public void fetchesCardsFromApi() throws Exception {
+        List<Card> cards = service.fetchCards(5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Card.ofDeckIndex(i), cards.get(i));
+        }
+    }
+    
+    @Test
+    public void dealsLocallyOnWellFormedJsonOfTheWrongShape() throws Exception {
+        for (String body : new String[] {"[]", "{\"cards\": 5}", "{\"cards\": [1]}", "{\"cards\": [{\"rank\": 7}]}"}) {
+            api.setResponder(StubHeartApi.body(200, body));
+            List<Card> cards = service.fetchCards(5);
+            assertEquals(body, 5, cards.size());
+            assertEquals(body, 5, new HashSet<>(cards).size());
+        }
+    }
+    
+    @Test
+    public void bodyThatStallsAfterHeadersTimesOut() throws Exception {
+        service = new HeartAPIService(api.baseUrl(), StubHeartApi.transport(Duration.ofMillis(400), null));
+        service.setFallbackEnabled(false);
+        api.setResponder(StubHeartApi.stallAfterHeaders(3_000));
+        
+        long start = System.nanoTime();
+        try {
+            service.fetchCards(5);
+            fail("stalled body accepted");
+        } catch (IOException expected) {
+            // Deadline passed while the body was being read
+        }
+        assertTrue("waited past the deadline", System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(2_000));
+        CardTransport transport = service.getTransport();
+        assertEquals(1, transport.getLatency().getCount());
+        assertEquals(1.0, transport.getBreaker().getFailureRate(), 0.0);
+        
+        service.setFallbackEnabled(true);
+        assertEquals(5, service.fetchCards(5).size());
+    }
+}
\ No newline at end of file
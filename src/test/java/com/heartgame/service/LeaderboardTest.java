@@ -0,0 +1,83 @@
+package com.heartgame.service;
+
+import com.heartgame.model.User;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LeaderboardTest {
+    
+    private static User player(String name, int bestScore) {
+        User user = new User(name);
+        user.restoreStats(1, 1, 0, bestScore, 60, 1, 1, null);
+        return user;
+    }
+    
+    @Test
+    public void ranksBestFirstWithTiesByName() {
+        Leaderboard board = new Leaderboard();
+        board.update(player("carol", 50));
+        board.update(player("bob", 70));
+        board.update(player("alice", 50));
+        
+        assertEquals(1, board.rankOf(Leaderboard.Metric.BEST_SCORE, "bob"));
+        assertEquals(2, board.rankOf(Leaderboard.Metric.BEST_SCORE, "alice"));
+        assertEquals(3, board.rankOf(Leaderboard.Metric.BEST_SCORE, "carol"));
+        assertEquals(-1, board.rankOf(Leaderboard.Metric.BEST_SCORE, "dave"));
+        assertTrue(board.around(Leaderboard.Metric.BEST_SCORE, "dave", 1).isEmpty());
+        
+        User carol = player("carol", 90);
+        board.update(carol);
+        List<Leaderboard.Entry> top = board.top(Leaderboard.Metric.BEST_SCORE, 2);
+        assertEquals("carol", top.get(0).getUsername());
+        assertEquals(90.0, top.get(0).getValue(), 0.0);
+        assertEquals("bob", top.get(1).getUsername());
+        assertEquals(3, board.size());
+        
+        List<Leaderboard.Entry> around = board.around(Leaderboard.Metric.BEST_SCORE, "alice", 1);
+        assertEquals(2, around.size());
+        assertEquals(2, around.get(0).getRank());
+        assertEquals(3, around.get(1).getRank());
+    }
+    
+    @Test
+    public void rankIsNeverZeroWhileUsersJoinAndMove() throws Exception {
+        Leaderboard board = new Leaderboard();
+        AtomicInteger joined = new AtomicInteger();
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        
+        Future<?> writer = pool.submit(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                board.update(player("user" + i, i % 97));
+                joined.set(i);
+                board.update(player("user" + (i / 2), i % 89));
+            }
+            done.set(true);
+        });
+        Future<?> reader = pool.submit(() -> {
+            while (!done.get()) {
+                int newest = joined.get();
+                for (String name : new String[] {"user" + (newest + 1), "user" + newest, "user" + (newest / 2)}) {
+                    int rank = board.rankOf(Leaderboard.Metric.BEST_SCORE, name);
+                    assertTrue(name + " ranked " + rank, rank == -1 || rank >= 1);
+                }
+            }
+        });
+        writer.get();
+        reader.get();
+        pool.shutdown();
+        
+        for (int i = 0; i < 20_000; i += 997) {
+            assertTrue(board.rankOf(Leaderboard.Metric.BEST_SCORE, "user" + i) >= 1);
+        }
+    }
+}
\ No newline at end of file
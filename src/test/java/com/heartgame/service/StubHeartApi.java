@@ -0,0 +1,157 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Card;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for the Heart API. By default it deals the first
+ * "number" cards of an unshuffled deck, so tests know exactly which cards
+ * each request returned.
+ */
+final class StubHeartApi implements Closeable {
+    
+    interface Responder {
+        void respond(HttpExchange exchange, int number) throws IOException;
+    }
+    
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Integer> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile Responder responder = StubHeartApi::deal;
+    private volatile Responder[] script = new Responder[0];
+    
+    StubHeartApi() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+    
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+    
+    void setResponder(Responder responder) {
+        this.responder = responder;
+    }
+    
+    /** The "number" parameter of every request so far, in arrival order. */
+    List<Integer> requests() {
+        return requests;
+    }
+    
+    /**
+     * Answers the first calls with the given responders, in arrival order,
+     * and later ones with the default responder.
+     */
+    void script(Responder... firstCalls) {
+        this.script = firstCalls;
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        int call = calls.getAndIncrement();
+        Responder[] script = this.script;
+        int number = 0;
+        String query = exchange.getRequestURI().getQuery();
+        for (String parameter : query != null ? query.split("&") : new String[0]) {
+            if (parameter.startsWith("number=")) {
+                number = Integer.parseInt(parameter.substring("number=".length()));
+            }
+        }
+        requests.add(number);
+        try {
+            (call < script.length ? script[call] : responder).respond(exchange, number);
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    static void deal(HttpExchange exchange, int number) throws IOException {
+        StringBuilder json = new StringBuilder("{\"success\": true, \"cards\": [");
+        for (int i = 0; i < number; i++) {
+            Card card = Card.ofDeckIndex(i % Card.DECK_SIZE);
+            json.append(i > 0 ? ", " : "")
+                    .append("{\"suit\": \"").append(card.getSuit())
+                    .append("\", \"rank\": \"").append(card.getRank()).append("\"}");
+        }
+        send(exchange, 200, json.append("]}").toString());
+    }
+    
+    static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+    
+    static Responder body(int status, String body) {
+        return (exchange, number) -> send(exchange, status, body);
+    }
+    
+    static Responder after(long millis, Responder then) {
+        return (exchange, number) -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            then.respond(exchange, number);
+        };
+    }
+    
+    /**
+     * Sends the headers and the first bytes of a body, then stalls.
+     */
+    static Responder stallAfterHeaders(long millis) {
+        return (exchange, number) -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write("{\"success\": true, \"cards\": [".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+    
+    /**
+     * A single-attempt transport against the stub whose breaker never opens.
+     */
+    static CardTransport transport(Duration deadline, Duration hedgeDelay) {
+        CircuitBreaker breaker = new CircuitBreaker(100, 100, 1.1, 1.1, Long.MAX_VALUE, Long.MAX_VALUE);
+        return new CardTransport(deadline, 1, Duration.ofMillis(10), hedgeDelay, breaker);
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
\ No newline at end of file
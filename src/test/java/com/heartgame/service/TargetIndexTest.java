@@ -0,0 +1,119 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Card;
+import com.heartgame.model.Hand;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TargetIndexTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private TargetIndex build(int handSize) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(TargetIndex.DEFAULT_FILE);
+        TargetIndexBuilder.build(file, handSize);
+        TargetIndex index = TargetIndex.open(file);
+        assertEquals(handSize, index.getHandSize());
+        return index;
+    }
+    
+    @Test
+    public void ranksEveryValueMultisetOnce() {
+        for (int handSize = 2; handSize <= 6; handSize++) {
+            Set<Integer> ranks = new HashSet<>();
+            int[] values = new int[handSize];
+            Arrays.fill(values, TargetIndex.MIN_VALUE);
+            do {
+                int rank = TargetIndex.rank(values, handSize);
+                assertTrue(rank >= 0 && rank < TargetIndex.handCount(handSize));
+                assertTrue("rank " + rank + " repeated for " + Arrays.toString(values), ranks.add(rank));
+            } while (nextMultiset(values));
+            assertEquals(TargetIndex.handCount(handSize), ranks.size());
+        }
+    }
+    
+    /**
+     * Advances to the next non-decreasing value sequence, false after the last.
+     */
+    private static boolean nextMultiset(int[] values) {
+        int i = values.length - 1;
+        while (i >= 0 && values[i] == TargetIndex.MAX_VALUE) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        values[i]++;
+        for (int j = i + 1; j < values.length; j++) {
+            values[j] = values[i];
+        }
+        return true;
+    }
+    
+    @Test
+    public void lookupsMatchTheSolverOnDealtHands() throws Exception {
+        TargetIndex index = build(5);
+        TargetSolver solver = new TargetSolver();
+        Random random = new Random(42);
+        
+        for (int game = 0; game < 500; game++) {
+            Hand hand = Hand.deal(random, 5);
+            ReachableTargets expected = solver.solve(hand);
+            assertTrue(index.covers(hand));
+            assertEquals(hand.toString(), expected.size(), index.reachableCount(hand));
+            
+            for (int i = 0; i < expected.size(); i++) {
+                int target = expected.targetAt(i);
+                assertTrue(hand + " -> " + target, index.isReachable(hand, target));
+                assertEquals(hand + " -> " + target, expected.solutionCountAt(i), index.solutionCount(hand, target));
+            }
+            // Covers both the bitset window and the binary search past it
+            for (int target = -50; target < 400; target++) {
+                assertEquals(hand + " -> " + target, expected.contains(target), index.isReachable(hand, target));
+                assertEquals(hand + " -> " + target, expected.solutionCount(target), index.solutionCount(hand, target));
+            }
+            
+            int target = index.randomTarget(hand, random, 1, 100, Integer.MIN_VALUE);
+            if (target == Integer.MIN_VALUE) {
+                assertEquals(0, expected.countInRange(1, 100));
+            } else {
+                assertTrue(target >= 1 && target < 100 && expected.contains(target));
+            }
+        }
+    }
+    
+    @Test
+    public void coversOnlyHandsOfItsSize() throws Exception {
+        TargetIndex index = build(3);
+        Hand four = Hand.deal(new Random(1), 4);
+        Hand three = Hand.of(four.subList(0, 3));
+        
+        assertTrue(index.covers(three));
+        assertFalse(index.covers(four));
+        try {
+            index.isReachable(four, 10);
+            fail("looked up a hand the index does not cover");
+        } catch (IllegalArgumentException expected) {
+        }
+        
+        // Suits never change the entry a hand maps to
+        Hand reordered = Hand.of(Arrays.asList(
+                Card.of("spades", three.get(2).getRank()),
+                Card.of("clubs", three.get(0).getRank()),
+                Card.of("diamonds", three.get(1).getRank())));
+        assertEquals(index.reachableCount(three), index.reachableCount(reordered));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.heartgame.service;
+
+import com.heartgame.model.User;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Many threads registering the same players and playing games on them at
+ * once, enough to trigger journal compaction along the way.
+ */
+public class UserServiceConcurrencyTest {
+    
+    private static final int THREADS = 16;
+    private static final int PLAYERS = 200;
+    private static final int GAMES_PER_THREAD = 2_000;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void registersOnceAndCountsEveryGame() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        UserService service = new UserService(directory, UserJournal.FsyncPolicy.NEVER, 1000);
+        AtomicIntegerArray registrations = new AtomicIntegerArray(PLAYERS);
+        AtomicIntegerArray games = new AtomicIntegerArray(PLAYERS);
+        AtomicIntegerArray wins = new AtomicIntegerArray(PLAYERS);
+        int[] bestScores = new int[PLAYERS];
+        
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<?>> players = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            players.add(pool.submit(() -> {
+                startGate.await();
+                List<Integer> order = new ArrayList<>();
+                for (int p = 0; p < PLAYERS; p++) {
+                    order.add(p);
+                }
+                Collections.shuffle(order, new Random(thread));
+                for (int p : order) {
+                    if (service.registerUser(name(p))) {
+                        registrations.incrementAndGet(p);
+                    }
+                }
+                
+                for (int g = 0; g < GAMES_PER_THREAD; g++) {
+                    int p = (thread * 7 + g) % PLAYERS;
+                    boolean won = g % 3 != 0;
+                    User user = service.login(name(p));
+                    int changed = user.updateStats(won, won ? score(thread, g) : 0, 20 + g % 40);
+                    service.updateUser(user);
+                    service.checkAndUnlockAchievements(user, changed);
+                    games.incrementAndGet(p);
+                    if (won) {
+                        wins.incrementAndGet(p);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (int t = 0; t < THREADS; t++) {
+            for (int g = 0; g < GAMES_PER_THREAD; g++) {
+                int p = (t * 7 + g) % PLAYERS;
+                if (g % 3 != 0) {
+                    bestScores[p] = Math.max(bestScores[p], score(t, g));
+                }
+            }
+        }
+        
+        startGate.countDown();
+        for (Future<?> player : players) {
+            player.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+        
+        for (int p = 0; p < PLAYERS; p++) {
+            assertEquals("registrations of " + name(p), 1, registrations.get(p));
+        }
+        assertEquals(PLAYERS, service.getUserCount());
+        assertStats(service, games, wins, bestScores);
+        service.close();
+        
+        UserService reopened = new UserService(directory, UserJournal.FsyncPolicy.NEVER, 1000);
+        try {
+            assertEquals(PLAYERS, reopened.getUserCount());
+            assertStats(reopened, games, wins, bestScores);
+        } finally {
+            reopened.close();
+        }
+    }
+    
+    private static void assertStats(UserService service, AtomicIntegerArray games, AtomicIntegerArray wins,
+                                    int[] bestScores) {
+        int total = 0;
+        for (int p = 0; p < PLAYERS; p++) {
+            User user = service.login(name(p));
+            assertNotNull(name(p), user);
+            assertEquals("games of " + name(p), games.get(p), user.getTotalGamesPlayed());
+            assertEquals("wins of " + name(p), wins.get(p), user.getGamesWon());
+            assertEquals("losses of " + name(p), games.get(p) - wins.get(p), user.getGamesLost());
+            assertEquals("best score of " + name(p), bestScores[p], user.getBestScore());
+            total += user.getTotalGamesPlayed();
+        }
+        assertEquals(THREADS * GAMES_PER_THREAD, total);
+    }
+    
+    private static String name(int player) {
+        return "player" + player;
+    }
+    
+    private static int score(int thread, int game) {
+        return 100 + (thread * 31 + game * 17) % 900;
+    }
+}
\ No newline at end of file
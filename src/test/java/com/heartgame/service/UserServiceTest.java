@@ -0,0 +1,74 @@
+package com.heartgame.service;
+
+import com.heartgame.model.Achievement;
+import com.heartgame.model.User;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UserServiceTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private UserService open(Path directory) {
+        return new UserService(directory, UserJournal.FsyncPolicy.NEVER, 1000);
+    }
+    
+    @Test
+    public void achievementsUnlockedAfterSnapshotSurviveReload() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        UserService service = open(directory);
+        assertTrue(service.registerUser("carol"));
+        User user = service.login("carol");
+        user.updateStats(true, 500, 10);
+        service.updateUser(user);
+        
+        // The snapshot takes the stats and unpins the user; the unlock
+        // must pin it again or the next snapshot drops it
+        service.saveSnapshot();
+        List<Achievement> unlocked = service.checkAndUnlockAchievements(user);
+        assertEquals(2, unlocked.size());
+        service.close();
+        
+        UserService reopened = open(directory);
+        try {
+            User reloaded = reopened.login("carol");
+            assertEquals(1, reloaded.getGamesWon());
+            assertEquals(new HashSet<>(Arrays.asList("FIRST_WIN", "SPEED_DEMON")),
+                    new HashSet<>(reloaded.getUnlockedAchievements()));
+        } finally {
+            reopened.close();
+        }
+    }
+    
+    @Test
+    public void achievementsSurviveCompactionBetweenUnlockAndReload() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        UserService service = open(directory);
+        service.registerUser("dave");
+        User user = service.login("dave");
+        user.updateStats(true, 1200, 45);
+        service.updateUser(user);
+        service.saveSnapshot();
+        assertEquals(2, service.checkAndUnlockAchievements(user).size());
+        service.saveSnapshot();
+        service.close();
+        
+        UserService reopened = open(directory);
+        try {
+            assertEquals(new HashSet<>(Arrays.asList("FIRST_WIN", "PERFECT_SCORE")),
+                    new HashSet<>(reopened.login("dave").getUnlockedAchievements()));
+        } finally {
+            reopened.close();
+        }
+    }
+}
\ No newline at end of file